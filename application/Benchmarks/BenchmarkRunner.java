@@ -0,0 +1,164 @@
+package Benchmarks;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+// Times an operation over warmup and measurement iterations of a fixed length. It reports the time per operation,
+// the bytes the benchmark thread allocated per operation, and the garbage collections seen while measuring.
+// Operations should run on the calling thread, since only its allocations are counted.
+public class BenchmarkRunner {
+    private static volatile Object sink;
+    private final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private int warmupIterations = 3;
+    private int measurementIterations = 5;
+    private long iterationMillis = 250;
+
+    public BenchmarkRunner() {
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    public void setWarmupIterations(int warmupIterations) {
+        this.warmupIterations = warmupIterations;
+    }
+
+    public void setMeasurementIterations(int measurementIterations) {
+        this.measurementIterations = measurementIterations;
+    }
+
+    public void setIterationMillis(long iterationMillis) {
+        this.iterationMillis = iterationMillis;
+    }
+
+    // keeps a result alive so the JIT cannot drop the work that produced it
+    public static void consume(Object result) {
+        sink = result;
+    }
+
+    public Result run(String name, Runnable operation) {
+        int iteration = 0;
+        while (iteration < warmupIterations) {
+            runIteration(operation, new double[2]);
+            iteration++;
+        }
+
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        double[] nanosPerOp = new double[measurementIterations];
+        double bytesPerOp = 0;
+        long operations = 0;
+        iteration = 0;
+        while (iteration < measurementIterations) {
+            double[] measurement = new double[2];
+            operations += runIteration(operation, measurement);
+            nanosPerOp[iteration] = measurement[0];
+            bytesPerOp += measurement[1] / measurementIterations;
+            iteration++;
+        }
+        return new Result(name, nanosPerOp, bytesPerOp, operations, gcCount() - gcCountBefore, gcMillis() - gcMillisBefore);
+    }
+
+    // fills in {nanoseconds per operation, bytes per operation} and returns the number of operations run
+    private long runIteration(Runnable operation, double[] measurement) {
+        long operations = 0;
+        long startBytes = threadBean.getCurrentThreadAllocatedBytes();
+        long startTime = System.nanoTime();
+        long endTime = startTime + iterationMillis * 1_000_000L;
+        long now = startTime;
+        while (now < endTime || operations == 0) {
+            operation.run();
+            operations++;
+            now = System.nanoTime();
+        }
+        long allocatedBytes = threadBean.getCurrentThreadAllocatedBytes() - startBytes;
+        measurement[0] = (double) (now - startTime) / operations;
+        measurement[1] = (double) allocatedBytes / operations;
+        return operations;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gcBean.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gcBean.getCollectionTime());
+        }
+        return millis;
+    }
+
+    public static class Result {
+        private final String name;
+        private final double nanosPerOp;
+        private final double errorNanosPerOp;
+        private final double bytesPerOp;
+        private final long operations;
+        private final long gcCount;
+        private final long gcMillis;
+
+        private Result(String name, double[] nanosPerOp, double bytesPerOp, long operations, long gcCount, long gcMillis) {
+            this.name = name;
+            double mean = 0;
+            for (double value : nanosPerOp) {
+                mean += value / nanosPerOp.length;
+            }
+            double variance = 0;
+            for (double value : nanosPerOp) {
+                variance += (value - mean) * (value - mean) / Math.max(1, nanosPerOp.length - 1);
+            }
+            this.nanosPerOp = mean;
+            errorNanosPerOp = Math.sqrt(variance);
+            this.bytesPerOp = bytesPerOp;
+            this.operations = operations;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getNanosPerOp() {
+            return nanosPerOp;
+        }
+
+        // the standard deviation across measurement iterations
+        public double getErrorNanosPerOp() {
+            return errorNanosPerOp;
+        }
+
+        public double getBytesPerOp() {
+            return bytesPerOp;
+        }
+
+        public long getOperations() {
+            return operations;
+        }
+
+        public long getGcCount() {
+            return gcCount;
+        }
+
+        public long getGcMillis() {
+            return gcMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-52s %14s ± %-12s %12.1f B/op %6d gc %6d ms gc", name, formatNanos(nanosPerOp), formatNanos(errorNanosPerOp), bytesPerOp, gcCount, gcMillis);
+        }
+
+        private static String formatNanos(double nanos) {
+            if (nanos >= 1_000_000) {
+                return String.format("%.2f ms/op", nanos / 1_000_000);
+            } else if (nanos >= 1_000) {
+                return String.format("%.2f us/op", nanos / 1_000);
+            }
+            return String.format("%.1f ns/op", nanos);
+        }
+    }
+}
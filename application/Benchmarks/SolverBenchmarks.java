@@ -0,0 +1,199 @@
+package Benchmarks;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import Puzzles.Puzzle;
+import Puzzles.PuzzleCsvReader;
+import Solver.LineSolverEngine;
+import Solver.PicrossClues;
+import Solver.PicrossSolver;
+
+// Benchmarks for single line solves across line lengths and fill densities, for solvable() on every sample puzzle,
+// and for guess and check on the samples that line solving alone cannot finish.
+//
+// usage: SolverBenchmarks [--quick] [--filter text] [--samples directory] [--output file.csv]
+//                         [--baseline file.csv] [--tolerance fraction]
+//
+// With a baseline, any benchmark that got slower or allocates more than the tolerance allows is reported as a
+// regression and the exit status is 1.
+public class SolverBenchmarks {
+    private final static int[] LINE_LENGTHS = {10, 25, 50, 100};
+    private final static int[] FILL_PERCENTS = {30, 50, 70};
+    // the distributions engine tries every distribution of the nums, which gets too slow to measure past this length
+    private final static int MAX_DISTRIBUTIONS_LINE_LENGTH = 50;
+    private final static int LINES_PER_CASE = 256;
+    private final BenchmarkRunner runner = new BenchmarkRunner();
+    private final ArrayList<BenchmarkRunner.Result> results = new ArrayList<>();
+    private String filter = "";
+
+    public static void main(String[] args) throws IOException {
+        SolverBenchmarks benchmarks = new SolverBenchmarks();
+        Path samples = Paths.get("samples");
+        Optional<Path> output = Optional.empty();
+        Optional<Path> baseline = Optional.empty();
+        double tolerance = 0.2;
+        int index = 0;
+        while (index < args.length) {
+            switch (args[index]) {
+                case "--quick" -> {
+                    benchmarks.runner.setWarmupIterations(1);
+                    benchmarks.runner.setMeasurementIterations(2);
+                    benchmarks.runner.setIterationMillis(100);
+                }
+                case "--filter" ->    benchmarks.filter = args[++index];
+                case "--samples" ->   samples = Paths.get(args[++index]);
+                case "--output" ->    output = Optional.of(Paths.get(args[++index]));
+                case "--baseline" ->  baseline = Optional.of(Paths.get(args[++index]));
+                case "--tolerance" -> tolerance = Double.parseDouble(args[++index]);
+                default -> {
+                    System.err.println("usage: SolverBenchmarks [--quick] [--filter text] [--samples directory] [--output file.csv] [--baseline file.csv] [--tolerance fraction]");
+                    System.exit(2);
+                }
+            }
+            index++;
+        }
+
+        benchmarks.runLineSolverBenchmarks();
+        benchmarks.runPuzzleBenchmarks(samples);
+
+        if (output.isPresent()) {
+            benchmarks.writeResults(output.get());
+        }
+        if (baseline.isPresent() && !benchmarks.compareWithBaseline(baseline.get(), tolerance)) {
+            System.exit(1);
+        }
+    }
+
+    private void run(String name, Runnable operation) {
+        if (!name.contains(filter)) {
+            return;
+        }
+        BenchmarkRunner.Result result = runner.run(name, operation);
+        System.out.println(result);
+        results.add(result);
+    }
+
+    private void runLineSolverBenchmarks() {
+        for (LineSolverEngine engine : LineSolverEngine.values()) {
+            for (int lineLength : LINE_LENGTHS) {
+                if (engine == LineSolverEngine.DISTRIBUTIONS && lineLength > MAX_DISTRIBUTIONS_LINE_LENGTH) {
+                    continue;
+                }
+                for (int fillPercent : FILL_PERCENTS) {
+                    int[][][] cases = randomLines(lineLength, fillPercent, new Random(31L * lineLength + fillPercent));
+                    int[] newLine = new int[lineLength];
+                    int[] next = {0};
+                    run("line/" + engine + "/length=" + lineLength + "/fill=" + fillPercent, () -> {
+                        int[][] lineCase = cases[next[0]];
+                        next[0] = (next[0] + 1) % cases.length;
+                        engine.solveLine(lineCase[0], lineCase[1], newLine);
+                        BenchmarkRunner.consume(newLine);
+                    });
+                }
+            }
+        }
+    }
+
+    // each case is {line, nums} for a random line with about half of its cells already known
+    private static int[][][] randomLines(int lineLength, int fillPercent, Random random) {
+        int[][][] cases = new int[LINES_PER_CASE][][];
+        int index = 0;
+        while (index < LINES_PER_CASE) {
+            int[] solution = new int[lineLength];
+            int[] line = new int[lineLength];
+            int cell = 0;
+            while (cell < lineLength) {
+                solution[cell] = random.nextInt(100) < fillPercent ? PicrossSolver.FILLED_CELL : PicrossSolver.CROSSED_CELL;
+                line[cell] = random.nextBoolean() ? solution[cell] : PicrossSolver.EMPTY_CELL;
+                cell++;
+            }
+            cases[index] = new int[][] {line, PicrossClues.lineClues(solution)};
+            index++;
+        }
+        return cases;
+    }
+
+    private void runPuzzleBenchmarks(Path samples) throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(samples)) {
+            files = paths.filter(path -> path.getFileName().toString().endsWith(".csv"))
+                         .sorted()
+                         .collect(Collectors.toList());
+        }
+
+        ArrayList<Puzzle> hardPuzzles = new ArrayList<>();
+        for (Path file : files) {
+            Puzzle puzzle;
+            try {
+                puzzle = PuzzleCsvReader.read(file);
+            } catch (IOException e) {
+                System.out.println("Skipping " + file.getFileName() + ": " + e.getMessage());
+                continue;
+            }
+            run("solvable/" + puzzle.getName(), () -> BenchmarkRunner.consume(newSolver(puzzle).solvable()));
+            if (!newSolver(puzzle).solvable()) {
+                hardPuzzles.add(puzzle);
+            }
+        }
+
+        for (Puzzle puzzle : hardPuzzles) {
+            run("guessAndCheck/" + puzzle.getName(), () -> BenchmarkRunner.consume(newSolver(puzzle).solvableWithGuessAndCheck()));
+        }
+    }
+
+    private static PicrossSolver newSolver(Puzzle puzzle) {
+        PicrossSolver solver = new PicrossSolver(puzzle.getRowClues(), puzzle.getColClues(), Optional.empty());
+        solver.stopRecordingSteps();
+        return solver;
+    }
+
+    private void writeResults(Path file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            writer.println("name,nanosPerOp,errorNanosPerOp,bytesPerOp");
+            for (BenchmarkRunner.Result result : results) {
+                writer.println(result.getName() + "," + result.getNanosPerOp() + "," + result.getErrorNanosPerOp() + "," + result.getBytesPerOp());
+            }
+        }
+    }
+
+    // returns false when any benchmark regressed past the tolerance
+    private boolean compareWithBaseline(Path file, double tolerance) throws IOException {
+        HashMap<String, double[]> baseline = new HashMap<>();
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (String line : lines.subList(Math.min(1, lines.size()), lines.size())) {
+            String[] fields = line.split(",");
+            if (fields.length >= 4) {
+                baseline.put(fields[0], new double[] {Double.parseDouble(fields[1]), Double.parseDouble(fields[3])});
+            }
+        }
+
+        boolean noRegression = true;
+        System.out.println();
+        for (BenchmarkRunner.Result result : results) {
+            double[] before = baseline.get(result.getName());
+            if (before == null) {
+                continue;
+            }
+            double timeChange = result.getNanosPerOp() / before[0] - 1;
+            // a few bytes per operation either way is measurement noise
+            boolean moreAllocation = result.getBytesPerOp() > before[1] * (1 + tolerance) + 16;
+            boolean slower = timeChange > tolerance;
+            String verdict = slower || moreAllocation ? "REGRESSION" : "ok";
+            System.out.println(String.format("%-52s %+7.1f%% time  %10.1f -> %10.1f B/op  %s", result.getName(), 100 * timeChange, before[1], result.getBytesPerOp(), verdict));
+            noRegression = noRegression && !slower && !moreAllocation;
+        }
+        return noRegression;
+    }
+}
@@ -0,0 +1,399 @@
+package Headless;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import Puzzles.Puzzle;
+import Puzzles.PuzzleCsvReader;
+import Solver.CanonicalClues;
+import Solver.LineSolverEngine;
+import Solver.PicrossSolver;
+import Solver.PropagationRule;
+import Solver.SolverCancelledException;
+import Solver.SolverMetrics;
+import Solver.SolverStatistics;
+import Solver.SolverTask;
+
+// Checks every puzzle CSV in a directory without a display, the same way the viewer does: line solving first, then
+// guess and check for the puzzles that line solving cannot finish. --rules picks the propagation rules guess and check
+// runs before probing, out of ClueEdge, LinePair and NeighbourhoodProbe, and none by default.
+//
+// usage: BatchSolver [--threads n] [--engine EXTREMES|DISTRIBUTIONS] [--no-guessing] [--rules name,...|all|none]
+//                    [--timeout seconds] [--metrics file.jsonl] [--index file.pcri] <directory>
+//
+// With a timeout, a puzzle that takes longer than that to check is stopped and counted as timed out. With a metrics
+// file, the SolverMetrics of each puzzle are written to it as one JSON object per line. With an index, puzzles
+// checked on an earlier run, even mirrored, rotated or transposed, are answered from it without solving them. The
+// totals are also shown over JMX while it runs. Exits with 1 when any puzzle failed to load or could not be solved, and 2 when the arguments are wrong.
+public class BatchSolver {
+    public static enum Outcome { SOLVABLE, GUESSING, UNSOLVABLE, TIMED_OUT, LOAD_ERROR }
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private LineSolverEngine lineSolverEngine = LineSolverEngine.EXTREMES;
+    private boolean tryingGuessAndCheck = true;
+    private Optional<Duration> timeLimit = Optional.empty();
+    private Optional<ResultIndex> resultIndex = Optional.empty();
+    private List<PropagationRule> propagationRules = PropagationRule.defaults();
+
+    public static void main(String[] args) {
+        BatchSolver batchSolver = new BatchSolver();
+        Optional<Path> directory = Optional.empty();
+        Optional<Path> metricsFile = Optional.empty();
+        Optional<Path> indexFile = Optional.empty();
+        try {
+            int index = 0;
+            while (index < args.length) {
+                switch (args[index]) {
+                    case "--threads" ->     batchSolver.setThreadCount(Integer.parseInt(args[++index]));
+                    case "--engine" ->      batchSolver.setLineSolverEngine(LineSolverEngine.valueOf(args[++index].toUpperCase()));
+                    case "--no-guessing" -> batchSolver.setTryingGuessAndCheck(false);
+                    case "--rules" ->       batchSolver.setPropagationRules(parseRules(args[++index]));
+                    case "--timeout" ->     batchSolver.setTimeLimit(Optional.of(Duration.ofMillis((long) (1000 * Double.parseDouble(args[++index])))));
+                    case "--metrics" ->     metricsFile = Optional.of(Paths.get(args[++index]));
+                    case "--index" ->       indexFile = Optional.of(Paths.get(args[++index]));
+                    default -> {
+                        if (args[index].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option " + args[index]);
+                        }
+                        directory = Optional.of(Paths.get(args[index]));
+                    }
+                }
+                index++;
+            }
+        } catch (RuntimeException e) {
+            directory = Optional.empty();
+        }
+        if (directory.isEmpty() || !Files.isDirectory(directory.get()) || batchSolver.threadCount <= 0) {
+            System.err.println("usage: BatchSolver [--threads n] [--engine EXTREMES|DISTRIBUTIONS] [--no-guessing] [--rules name,...|all|none] [--timeout seconds] [--metrics file.jsonl] [--index file.pcri] <directory>");
+            System.exit(2);
+        }
+
+        SolverStatistics.register();
+        if (indexFile.isPresent()) {
+            try {
+                batchSolver.setResultIndex(Optional.of(ResultIndex.open(indexFile.get())));
+            } catch (IOException e) {
+                System.err.println("Could not open " + indexFile.get() + ": " + e.getMessage());
+                System.exit(2);
+            }
+        }
+        try {
+            List<Result> results = batchSolver.solveDirectory(directory.get());
+            if (metricsFile.isPresent()) {
+                writeMetrics(metricsFile.get(), results);
+            }
+            boolean allSolved = results.stream().allMatch(result -> result.outcome == Outcome.SOLVABLE || result.outcome == Outcome.GUESSING);
+            System.exit(allSolved ? 0 : 1);
+        } catch (IOException e) {
+            System.err.println("Could not read " + directory.get() + ": " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    private static List<PropagationRule> parseRules(String names) {
+        if (names.equalsIgnoreCase("none")) {
+            return List.of();
+        } else if (names.equalsIgnoreCase("all")) {
+            return PropagationRule.all();
+        }
+        return Stream.of(names.split(",")).map(PropagationRule::named).collect(Collectors.toList());
+    }
+
+    private static void writeMetrics(Path file, List<Result> results) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            for (Result result : results) {
+                writer.println(result.toJson());
+            }
+        }
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    public void setLineSolverEngine(LineSolverEngine lineSolverEngine) {
+        this.lineSolverEngine = lineSolverEngine;
+    }
+
+    public void setTryingGuessAndCheck(boolean tryingGuessAndCheck) {
+        this.tryingGuessAndCheck = tryingGuessAndCheck;
+    }
+
+    public void setTimeLimit(Optional<Duration> timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    public void setPropagationRules(List<PropagationRule> propagationRules) {
+        this.propagationRules = propagationRules;
+    }
+
+    public void setResultIndex(Optional<ResultIndex> resultIndex) {
+        this.resultIndex = resultIndex;
+    }
+
+    // prints each result in file name order as soon as it and every result before it are done, then a summary
+    public List<Result> solveDirectory(Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(directory)) {
+            files = paths.filter(path -> path.getFileName().toString().toLowerCase().endsWith(".csv"))
+                         .filter(Files::isRegularFile)
+                         .sorted()
+                         .collect(Collectors.toList());
+        }
+
+        long startTime = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "batch-solver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayList<Result> results = new ArrayList<>();
+        try {
+            ArrayList<Future<Result>> futures = new ArrayList<>();
+            for (Path file : files) {
+                futures.add(pool.submit(() -> solveFile(file)));
+            }
+            for (Future<Result> future : futures) {
+                Result result = future.get();
+                System.out.println(result);
+                results.add(result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IOException("Solving failed: " + e.getCause(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        System.out.println(summarize(results, (System.nanoTime() - startTime) / 1_000_000));
+        return results;
+    }
+
+    public Result solveFile(Path file) {
+        String name = file.getFileName().toString();
+        long startTime = System.nanoTime();
+        Puzzle puzzle;
+        try {
+            puzzle = PuzzleCsvReader.read(file);
+        } catch (IOException | RuntimeException e) {
+            return new Result(name, Outcome.LOAD_ERROR, e.getMessage(), elapsedMillis(startTime), 0, 0, Optional.empty(), Optional.empty());
+        }
+        double loadMillis = elapsedMillis(startTime);
+        return solve(puzzle, loadMillis);
+    }
+
+    public Result solve(Puzzle puzzle, double loadMillis) {
+        if (timeLimit.isEmpty()) {
+            return solveWithoutTimeLimit(puzzle, loadMillis);
+        }
+
+        long startTime = System.nanoTime();
+        SolverTask<Result> task = SolverTask.submit(() -> solveWithoutTimeLimit(puzzle, loadMillis), timeLimit);
+        try {
+            return task.get();
+        } catch (SolverCancelledException e) {
+            return new Result(puzzle.getName(), Outcome.TIMED_OUT, puzzle.getRowCount() + "x" + puzzle.getColCount(), loadMillis, elapsedMillis(startTime), 0, Optional.empty(), Optional.empty());
+        } catch (InterruptedException e) {
+            task.cancel();
+            Thread.currentThread().interrupt();
+            throw new SolverCancelledException("Interrupted while checking " + puzzle.getName());
+        }
+    }
+
+    private Result solveWithoutTimeLimit(Puzzle puzzle, double loadMillis) {
+        return solveClues(puzzle.getName(), puzzle.getRowClues(), puzzle.getColClues(), loadMillis);
+    }
+
+    // for clues that come without a drawing, and callers that put their own time limits on solves
+    public Result solveClues(String name, int[][] rowClues, int[][] colClues, double loadMillis) {
+        if (resultIndex.isEmpty()) {
+            return solveUnindexed(name, rowClues, colClues, loadMillis);
+        }
+        CanonicalClues canonicalClues = CanonicalClues.of(rowClues, colClues);
+        Optional<Result> indexed = lookUp(name, canonicalClues, rowClues.length + "x" + colClues.length, loadMillis);
+        if (indexed.isPresent()) {
+            return indexed.get();
+        }
+
+        Result result = solveUnindexed(name, rowClues, colClues, loadMillis);
+        // without guess and check, UNSOLVABLE only means line solving could not finish it
+        if (result.outcome != Outcome.UNSOLVABLE || tryingGuessAndCheck) {
+            try {
+                resultIndex.get().record(canonicalClues, result.outcome);
+            } catch (IOException e) {
+                System.err.println("Could not add " + name + " to the result index: " + e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    // the outcome the index has for these clues, as it would be without guess and check if that is turned off
+    public Optional<Result> lookUp(String name, CanonicalClues canonicalClues, String size, double loadMillis) {
+        Optional<Outcome> outcome = resultIndex.flatMap(index -> index.lookup(canonicalClues));
+        if (outcome.isEmpty()) {
+            return Optional.empty();
+        }
+        Outcome indexedOutcome = !tryingGuessAndCheck && outcome.get() == Outcome.GUESSING ? Outcome.UNSOLVABLE : outcome.get();
+        return Optional.of(new Result(name, indexedOutcome, size, loadMillis, 0, 0, Optional.empty(), Optional.empty(), true));
+    }
+
+    private Result solveUnindexed(String name, int[][] rowClues, int[][] colClues, double loadMillis) {
+        PicrossSolver solver = new PicrossSolver(rowClues, colClues, Optional.empty());
+        solver.setLineSolverEngine(lineSolverEngine);
+        solver.setPropagationRules(propagationRules);
+        solver.stopRecordingSteps();
+        String size = rowClues.length + "x" + colClues.length;
+
+        long startTime = System.nanoTime();
+        if (solver.solvable()) {
+            return new Result(name, Outcome.SOLVABLE, size, loadMillis, elapsedMillis(startTime), 0, Optional.of(solver.getMetrics()), Optional.empty());
+        }
+        double solveMillis = elapsedMillis(startTime);
+        SolverMetrics solveMetrics = solver.getMetrics();
+        if (!tryingGuessAndCheck) {
+            return new Result(name, Outcome.UNSOLVABLE, size, loadMillis, solveMillis, 0, Optional.of(solveMetrics), Optional.empty());
+        }
+
+        startTime = System.nanoTime();
+        Outcome outcome = solver.solvableWithGuessAndCheck() ? Outcome.GUESSING : Outcome.UNSOLVABLE;
+        return new Result(name, outcome, size, loadMillis, solveMillis, elapsedMillis(startTime), Optional.of(solveMetrics), Optional.of(solver.getMetrics()));
+    }
+
+    private String summarize(List<Result> results, long totalMillis) {
+        long[] counts = new long[Outcome.values().length];
+        for (Result result : results) {
+            counts[result.outcome.ordinal()]++;
+        }
+        return "Checked " + results.size() + " puzzles on " + threadCount + " threads in " + totalMillis + "ms: "
+               + counts[Outcome.SOLVABLE.ordinal()] + " solvable, "
+               + counts[Outcome.GUESSING.ordinal()] + " needed guessing, "
+               + counts[Outcome.UNSOLVABLE.ordinal()] + " unsolvable, "
+               + counts[Outcome.TIMED_OUT.ordinal()] + " timed out, "
+               + counts[Outcome.LOAD_ERROR.ordinal()] + " failed to load";
+    }
+
+    private static double elapsedMillis(long startTime) {
+        return (System.nanoTime() - startTime) / 1_000_000.0;
+    }
+
+    // as a JSON string, with control characters escaped as well as quotes and backslashes
+    protected static String quote(String text) {
+        StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+        for (char character : text.toCharArray()) {
+            if (character == '"' || character == '\\') {
+                quoted.append('\\').append(character);
+            } else if (character < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) character));
+            } else {
+                quoted.append(character);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    public static class Result {
+        private final String name;
+        private final Outcome outcome;
+        // the puzzle size, or the reason it failed to load
+        private final String detail;
+        private final double loadMillis;
+        private final double solveMillis;
+        private final double guessMillis;
+        private final Optional<SolverMetrics> solveMetrics;
+        private final Optional<SolverMetrics> guessMetrics;
+        private final boolean fromIndex;
+
+        private Result(String name, Outcome outcome, String detail, double loadMillis, double solveMillis, double guessMillis,
+                       Optional<SolverMetrics> solveMetrics, Optional<SolverMetrics> guessMetrics) {
+            this(name, outcome, detail, loadMillis, solveMillis, guessMillis, solveMetrics, guessMetrics, false);
+        }
+
+        private Result(String name, Outcome outcome, String detail, double loadMillis, double solveMillis, double guessMillis,
+                       Optional<SolverMetrics> solveMetrics, Optional<SolverMetrics> guessMetrics, boolean fromIndex) {
+            this.name = name;
+            this.outcome = outcome;
+            this.detail = detail;
+            this.loadMillis = loadMillis;
+            this.solveMillis = solveMillis;
+            this.guessMillis = guessMillis;
+            this.solveMetrics = solveMetrics;
+            this.guessMetrics = guessMetrics;
+            this.fromIndex = fromIndex;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+
+        public double getLoadMillis() {
+            return loadMillis;
+        }
+
+        public double getSolveMillis() {
+            return solveMillis;
+        }
+
+        public double getGuessMillis() {
+            return guessMillis;
+        }
+
+        // empty when the puzzle failed to load or timed out
+        public Optional<SolverMetrics> getSolveMetrics() {
+            return solveMetrics;
+        }
+
+        // empty unless guess and check was tried
+        public Optional<SolverMetrics> getGuessMetrics() {
+            return guessMetrics;
+        }
+
+        // answered from a ResultIndex, so nothing was solved and there are no metrics
+        public boolean isFromIndex() {
+            return fromIndex;
+        }
+
+        public String toJson() {
+            return toJson(name);
+        }
+
+        // as if the puzzle had been called name, for a result shared by puzzles that only differ by a symmetry
+        protected String toJson(String name) {
+            return "{\"name\":" + quote(name) + ",\"outcome\":\"" + outcome + "\",\"fromIndex\":" + fromIndex
+                   + ",\"solve\":" + solveMetrics.map(SolverMetrics::toJson).orElse("null")
+                   + ",\"guess\":" + guessMetrics.map(SolverMetrics::toJson).orElse("null") + "}";
+        }
+
+        @Override
+        public String toString() {
+            if (outcome == Outcome.LOAD_ERROR) {
+                return String.format("%-30s %-10s %s", name, outcome, detail);
+            }
+            if (fromIndex) {
+                return String.format("%-30s %-10s %7s  load %8.1fms  from the index", name, outcome, detail, loadMillis);
+            }
+            return String.format("%-30s %-10s %7s  load %8.1fms  solve %8.1fms  guess %8.1fms", name, outcome, detail, loadMillis, solveMillis, guessMillis);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package Headless;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+// Just enough JSON for the requests SolverService takes. Objects are read as LinkedHashMaps, arrays as ArrayLists,
+// whole numbers as Longs and other numbers as Doubles. Nesting is limited so a hostile request cannot run the stack out.
+class JsonReader {
+    private final static int MAX_DEPTH = 64;
+    private final String text;
+    private int position = 0;
+
+    private JsonReader(String text) {
+        this.text = text;
+    }
+
+    protected static Object read(String text) throws IOException {
+        JsonReader reader = new JsonReader(text);
+        Object value = reader.readValue(0);
+        reader.skipSpaces();
+        if (reader.position < text.length()) {
+            throw reader.error("Unexpected text after the end of the JSON");
+        }
+        return value;
+    }
+
+    private Object readValue(int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw error("JSON is nested more than " + MAX_DEPTH + " deep");
+        }
+        skipSpaces();
+        if (position >= text.length()) {
+            throw error("Expected a value but the JSON ended");
+        }
+        char character = text.charAt(position);
+        return switch (character) {
+            case '{' -> readObject(depth);
+            case '[' -> readArray(depth);
+            case '"' -> readString();
+            case 't' -> readWord("true", Boolean.TRUE);
+            case 'f' -> readWord("false", Boolean.FALSE);
+            case 'n' -> readWord("null", null);
+            default -> {
+                if (character == '-' || (character >= '0' && character <= '9')) {
+                    yield readNumber();
+                }
+                throw error("Unexpected '" + character + "'");
+            }
+        };
+    }
+
+    private LinkedHashMap<String, Object> readObject(int depth) throws IOException {
+        LinkedHashMap<String, Object> object = new LinkedHashMap<>();
+        position++;
+        skipSpaces();
+        if (peek() == '}') {
+            position++;
+            return object;
+        }
+        while (true) {
+            skipSpaces();
+            if (peek() != '"') {
+                throw error("Expected a field name");
+            }
+            String name = readString();
+            skipSpaces();
+            expect(':');
+            object.put(name, readValue(depth + 1));
+            skipSpaces();
+            if (peek() == ',') {
+                position++;
+            } else {
+                expect('}');
+                return object;
+            }
+        }
+    }
+
+    private ArrayList<Object> readArray(int depth) throws IOException {
+        ArrayList<Object> array = new ArrayList<>();
+        position++;
+        skipSpaces();
+        if (peek() == ']') {
+            position++;
+            return array;
+        }
+        while (true) {
+            array.add(readValue(depth + 1));
+            skipSpaces();
+            if (peek() == ',') {
+                position++;
+            } else {
+                expect(']');
+                return array;
+            }
+        }
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            if (position >= text.length()) {
+                throw error("A string is not closed");
+            }
+            char character = text.charAt(position++);
+            if (character == '"') {
+                return value.toString();
+            }
+            if (character != '\\') {
+                value.append(character);
+                continue;
+            }
+            if (position >= text.length()) {
+                throw error("A string is not closed");
+            }
+            char escaped = text.charAt(position++);
+            switch (escaped) {
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'u' -> {
+                    if (position + 4 > text.length()) {
+                        throw error("A \\u escape is cut short");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid \\u escape");
+                    }
+                    position += 4;
+                }
+                default -> value.append(escaped);
+            }
+        }
+    }
+
+    private Object readNumber() throws IOException {
+        int start = position;
+        boolean whole = true;
+        while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+            whole = whole && "0123456789-".indexOf(text.charAt(position)) >= 0;
+            position++;
+        }
+        String number = text.substring(start, position);
+        try {
+            return whole ? (Object) Long.parseLong(number) : (Object) Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            throw error("Invalid number " + number);
+        }
+    }
+
+    private Object readWord(String word, Object value) throws IOException {
+        if (!text.startsWith(word, position)) {
+            throw error("Unexpected '" + text.charAt(position) + "'");
+        }
+        position += word.length();
+        return value;
+    }
+
+    private char peek() {
+        return position < text.length() ? text.charAt(position) : 0;
+    }
+
+    private void expect(char expected) throws IOException {
+        if (peek() != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+        position++;
+    }
+
+    private void skipSpaces() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at character " + (position + 1));
+    }
+}
@@ -0,0 +1,92 @@
+package Headless;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import Puzzles.Puzzle;
+import Puzzles.PuzzleLibrary;
+
+// Converts between puzzle CSVs and puzzle libraries.
+//
+// usage: PuzzleLibraryTool pack <library> <csv file or directory>...
+//        PuzzleLibraryTool unpack <library> <directory>
+//        PuzzleLibraryTool list <library>
+//
+// Packing leaves out any CSV that fails to load, says why, and exits with 1 once the rest are packed.
+public class PuzzleLibraryTool {
+    private final static String USAGE = "usage: PuzzleLibraryTool pack <library> <csv file or directory>...\n"
+                                       + "       PuzzleLibraryTool unpack <library> <directory>\n"
+                                       + "       PuzzleLibraryTool list <library>";
+
+    public static void main(String[] args) {
+        if (args.length < 2 || (args[0].equals("pack") && args.length < 3) || (args[0].equals("unpack") && args.length != 3)
+                || (args[0].equals("list") && args.length != 2)) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        Path library = Paths.get(args[1]);
+        try {
+            switch (args[0]) {
+                case "pack" -> {
+                    List<Path> csvFiles = csvFiles(args);
+                    List<String> skipped = PuzzleLibrary.fromCsv(csvFiles, library);
+                    for (String reason : skipped) {
+                        System.err.println("Skipped " + reason);
+                    }
+                    System.out.println("Packed " + (csvFiles.size() - skipped.size()) + " puzzles into " + library + " (" + Files.size(library) + " bytes)"
+                                       + (skipped.isEmpty() ? "" : ", skipping " + skipped.size() + " that failed to load"));
+                    if (!skipped.isEmpty()) {
+                        System.exit(1);
+                    }
+                }
+                case "unpack" -> {
+                    List<Path> files = PuzzleLibrary.open(library).toCsv(Paths.get(args[2]));
+                    System.out.println("Wrote " + files.size() + " puzzles to " + args[2]);
+                }
+                case "list" -> {
+                    PuzzleLibrary puzzleLibrary = PuzzleLibrary.open(library);
+                    int index = 0;
+                    while (index < puzzleLibrary.size()) {
+                        Puzzle puzzle = puzzleLibrary.read(index);
+                        System.out.println(index + "\t" + puzzle);
+                        index++;
+                    }
+                }
+                default -> {
+                    System.err.println(USAGE);
+                    System.exit(2);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // the CSV files given directly and those in the given directories, in file name order within each directory
+    private static List<Path> csvFiles(String[] args) throws IOException {
+        ArrayList<Path> csvFiles = new ArrayList<>();
+        int index = 2;
+        while (index < args.length) {
+            Path path = Paths.get(args[index]);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> paths = Files.list(path)) {
+                    csvFiles.addAll(paths.filter(file -> file.getFileName().toString().toLowerCase().endsWith(".csv"))
+                                         .filter(Files::isRegularFile)
+                                         .sorted()
+                                         .collect(Collectors.toList()));
+                }
+            } else {
+                csvFiles.add(path);
+            }
+            index++;
+        }
+        return csvFiles;
+    }
+}
@@ -0,0 +1,130 @@
+package Headless;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Optional;
+
+import Headless.BatchSolver.Outcome;
+import Solver.CanonicalClues;
+
+// The outcomes of puzzles checked before, kept in a file by the hash of their canonical clues, so a puzzle seen before,
+// or any mirror image, rotation or transpose of it, is answered without solving it again. Only outcomes that do not
+// depend on how long the solve was allowed are kept: SOLVABLE, GUESSING, and UNSOLVABLE once guess and check has been
+// tried.
+//
+// The file is only ever appended to, and is read into memory when opened. A record cut short by a crash is dropped.
+//
+// Layout, with every number big endian:
+//   header  magic "PCRI" (int), version (short), reserved (short)
+//   records the canonical clue hash (two longs, high then low) and the outcome (byte), one after another
+public class ResultIndex implements AutoCloseable {
+    public final static String FILE_EXTENSION = ".pcri";
+    private final static int MAGIC = 0x50435249;
+    private final static short VERSION = 1;
+    private final static int HEADER_SIZE = 8;
+    private final static int RECORD_SIZE = 17;
+    private final String fileName;
+    // not a FileChannel, which closes itself for good when the thread writing to it is interrupted, and records are
+    // written from solves that a time limit can interrupt
+    private final RandomAccessFile file;
+    private final HashMap<String, Outcome> outcomes = new HashMap<>();
+
+    private ResultIndex(String fileName, RandomAccessFile file) {
+        this.fileName = fileName;
+        this.file = file;
+    }
+
+    // creates the file if there is none
+    public static ResultIndex open(Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file.toFile(), "rw");
+        try {
+            ResultIndex index = new ResultIndex(fileName, randomAccessFile);
+            index.load();
+            return index;
+        } catch (IOException | RuntimeException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    private void load() throws IOException {
+        if (file.length() < HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putShort(VERSION).putShort((short) 0);
+            file.setLength(0);
+            file.write(header.array());
+            return;
+        }
+
+        byte[] header = new byte[HEADER_SIZE];
+        file.seek(0);
+        readFully(header, HEADER_SIZE);
+        ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+        if (headerBuffer.getInt(0) != MAGIC) {
+            throw new IOException(fileName + " is not a result index");
+        }
+        short version = headerBuffer.getShort(4);
+        if (version != VERSION) {
+            throw new IOException(fileName + " is result index version " + version + " but only version " + VERSION + " can be read");
+        }
+
+        long recordCount = (file.length() - HEADER_SIZE) / RECORD_SIZE;
+        byte[] records = new byte[RECORD_SIZE * 4096];
+        long position = HEADER_SIZE;
+        long end = HEADER_SIZE + recordCount * RECORD_SIZE;
+        long record = 0;
+        while (position < end) {
+            int length = (int) Math.min(records.length, end - position);
+            readFully(records, length);
+            position += length;
+            ByteBuffer buffer = ByteBuffer.wrap(records, 0, length);
+            while (buffer.hasRemaining()) {
+                String hash = String.format("%016x%016x", buffer.getLong(), buffer.getLong());
+                byte outcome = buffer.get();
+                if (outcome < 0 || outcome >= Outcome.values().length) {
+                    throw new IOException(fileName + ": record " + record + " has an unknown outcome " + outcome);
+                }
+                outcomes.put(hash, Outcome.values()[outcome]);
+                record++;
+            }
+        }
+        // drops whatever is left of a record that was being written when the program stopped
+        file.setLength(end);
+    }
+
+    public synchronized int size() {
+        return outcomes.size();
+    }
+
+    public synchronized Optional<Outcome> lookup(CanonicalClues clues) {
+        return Optional.ofNullable(outcomes.get(clues.getHash()));
+    }
+
+    // does nothing for outcomes that are not kept or puzzles already in the index
+    public synchronized void record(CanonicalClues clues, Outcome outcome) throws IOException {
+        if ((outcome != Outcome.SOLVABLE && outcome != Outcome.GUESSING && outcome != Outcome.UNSOLVABLE) || outcomes.containsKey(clues.getHash())) {
+            return;
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE).putLong(clues.getHashHigh()).putLong(clues.getHashLow()).put((byte) outcome.ordinal());
+        file.seek(file.length());
+        file.write(record.array());
+        outcomes.put(clues.getHash(), outcome);
+    }
+
+    private void readFully(byte[] bytes, int length) throws IOException {
+        try {
+            file.readFully(bytes, 0, length);
+        } catch (EOFException e) {
+            throw new IOException(fileName + " ended early", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,569 @@
+package Headless;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import Puzzles.Puzzle;
+import Puzzles.PuzzleCsvReader;
+import Puzzles.PuzzleLibrary;
+import Solver.CanonicalClues;
+import Solver.LineSolverEngine;
+import Solver.PicrossClues;
+import Solver.SolverStatistics;
+import Solver.SolverTask;
+
+// Checks puzzles sent over HTTP, for other programs to use without the GUI. It only listens on localhost.
+//
+// usage: SolverService [--port n] [--workers n] [--queue n] [--deadline seconds] [--cache n] [--index file.pcri]
+//                      [--engine EXTREMES|DISTRIBUTIONS] [--no-guessing]
+//
+//   POST /solve       one puzzle as JSON or as CSV (text/csv) in the format the editor saves, or a puzzle library
+//                     (application/octet-stream) of any number of them. The JSON is {"rows": [[2, 1], ...],
+//                     "cols": [[3], ...]} or {"grid": [[0, 1, ...], ...]}, either with an optional "name" and
+//                     "deadlineMillis". Answers 202 with the job, or 200 when the result is already known.
+//   GET  /jobs/<id>   the job, with its result once it is done
+//   GET  /stats       the queue and cache sizes and the SolverStatistics totals
+// Both take ?wait=millis to wait up to that long for results before answering.
+//
+// Puzzles wait in a bounded queue for a fixed pool of workers, and a request that finds the queue full gets 503 with
+// Retry-After. Each puzzle has a deadline counted from when it was accepted, queueing included, and one that misses it
+// is stopped and reported as TIMED_OUT. Jobs are kept by their CanonicalClues, whose hash is the job id, so sending a
+// puzzle that was solved, or is being solved, gets the same job straight back even mirrored, rotated or transposed,
+// until it falls out of the cache. Jobs that timed out or failed are tried again. With a ResultIndex, outcomes outlive
+// the cache and the service, and puzzles found in it are answered without solving them.
+public class SolverService {
+    public final static int DEFAULT_PORT = 8717;
+    private final static int MAX_LINES = 4096;
+    private final static int MAX_BODY_BYTES = 64 << 20;
+    private final static Duration MAX_WAIT = Duration.ofSeconds(60);
+    private final static int HANDLER_THREADS = 16;
+    private final BatchSolver batchSolver = new BatchSolver();
+    private int workerCount = Runtime.getRuntime().availableProcessors();
+    private int queueCapacity = 1024;
+    private Duration defaultDeadline = Duration.ofSeconds(30);
+    private int cacheCapacity = 10_000;
+    private ThreadPoolExecutor workers;
+    private ExecutorService handlers;
+    private LinkedHashMap<String, Job> jobs;
+    private HttpServer server;
+    private Optional<ResultIndex> resultIndex = Optional.empty();
+
+    public static void main(String[] args) throws IOException {
+        SolverService service = new SolverService();
+        int port = DEFAULT_PORT;
+        Optional<Path> indexFile = Optional.empty();
+        try {
+            int index = 0;
+            while (index < args.length) {
+                switch (args[index]) {
+                    case "--port" ->        port = Integer.parseInt(args[++index]);
+                    case "--workers" ->     service.workerCount = Integer.parseInt(args[++index]);
+                    case "--queue" ->       service.queueCapacity = Integer.parseInt(args[++index]);
+                    case "--deadline" ->    service.defaultDeadline = Duration.ofMillis((long) (1000 * Double.parseDouble(args[++index])));
+                    case "--cache" ->       service.cacheCapacity = Integer.parseInt(args[++index]);
+                    case "--index" ->       indexFile = Optional.of(Paths.get(args[++index]));
+                    case "--engine" ->      service.batchSolver.setLineSolverEngine(LineSolverEngine.valueOf(args[++index].toUpperCase()));
+                    case "--no-guessing" -> service.batchSolver.setTryingGuessAndCheck(false);
+                    default ->              throw new IllegalArgumentException("Unknown option " + args[index]);
+                }
+                index++;
+            }
+            if (service.workerCount <= 0 || service.queueCapacity <= 0 || service.cacheCapacity <= 0) {
+                throw new IllegalArgumentException("Counts must be positive");
+            }
+        } catch (RuntimeException e) {
+            System.err.println("usage: SolverService [--port n] [--workers n] [--queue n] [--deadline seconds] [--cache n] [--index file.pcri] [--engine EXTREMES|DISTRIBUTIONS] [--no-guessing]");
+            System.exit(2);
+        }
+
+        if (indexFile.isPresent()) {
+            try {
+                service.resultIndex = Optional.of(ResultIndex.open(indexFile.get()));
+                service.batchSolver.setResultIndex(service.resultIndex);
+            } catch (IOException e) {
+                System.err.println("Could not open " + indexFile.get() + ": " + e.getMessage());
+                System.exit(2);
+            }
+        }
+        SolverStatistics.register();
+        service.start(port);
+        System.out.println("Listening on http://" + service.server.getAddress().getHostString() + ":" + service.server.getAddress().getPort()
+                           + " with " + service.workerCount + " workers");
+    }
+
+    public void start(int port) throws IOException {
+        AtomicInteger workerNumber = new AtomicInteger();
+        workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "solver-service-worker-" + workerNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        jobs = new LinkedHashMap<String, Job>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Job> eldest) {
+                return size() > cacheCapacity;
+            }
+        };
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        handlers = Executors.newFixedThreadPool(HANDLER_THREADS);
+        server.setExecutor(handlers);
+        server.createContext("/solve", exchange -> handle(exchange, "POST", this::handleSolve));
+        server.createContext("/jobs/", exchange -> handle(exchange, "GET", this::handleJob));
+        server.createContext("/stats", exchange -> handle(exchange, "GET", this::handleStats));
+        server.start();
+    }
+
+    // stops taking requests and cancels every job still waiting or running
+    public void stop() {
+        server.stop(0);
+        handlers.shutdown();
+        for (Runnable waiting : workers.shutdownNow()) {
+            ((Future<?>) waiting).cancel(false);
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private static interface Handler {
+        void handle(HttpExchange exchange) throws IOException, InterruptedException;
+    }
+
+    private static void handle(HttpExchange exchange, String method, Handler handler) throws IOException {
+        // closing the exchange has to wait until any error has been sent
+        try (exchange) {
+            try {
+                if (!exchange.getRequestMethod().equals(method)) {
+                    exchange.getResponseHeaders().set("Allow", method);
+                    send(exchange, 405, error("Only " + method + " is allowed here"));
+                    return;
+                }
+                handler.handle(exchange);
+            } catch (BadRequestException e) {
+                send(exchange, 400, error(e.getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                send(exchange, 503, error("The service is stopping"));
+            } catch (RuntimeException e) {
+                send(exchange, 500, error(String.valueOf(e)));
+            }
+        }
+    }
+
+    private void handleSolve(HttpExchange exchange) throws IOException, InterruptedException {
+        String contentType = Optional.ofNullable(exchange.getRequestHeaders().getFirst("Content-Type")).orElse("application/json").toLowerCase();
+        byte[] body = readBody(exchange.getRequestBody());
+        Duration wait = waitFor(exchange.getRequestURI());
+
+        if (contentType.startsWith("application/octet-stream")) {
+            PuzzleLibrary library;
+            try {
+                library = PuzzleLibrary.fromBuffer("request", ByteBuffer.wrap(body));
+            } catch (IOException e) {
+                throw new BadRequestException(e.getMessage());
+            }
+            // every puzzle is checked before any is submitted, and read again to submit it so that only one puzzle's
+            // solution is held at a time
+            int index = 0;
+            while (index < library.size()) {
+                readLibraryPuzzle(library, index);
+                index++;
+            }
+            ArrayList<Submission> submissions = new ArrayList<>();
+            index = 0;
+            while (index < library.size()) {
+                Puzzle puzzle = readLibraryPuzzle(library, index);
+                submissions.add(submit(puzzle.getName(), puzzle.getRowClues(), puzzle.getColClues(), defaultDeadline));
+                index++;
+            }
+            awaitAll(submissions, wait);
+            StringBuilder json = new StringBuilder("{\"jobs\":[");
+            index = 0;
+            while (index < submissions.size()) {
+                json.append(index > 0 ? "," : "").append(submissions.get(index).toJson());
+                index++;
+            }
+            int status = submissions.stream().allMatch(submission -> submission.job.isFinished()) ? 200 : 202;
+            if (!submissions.isEmpty() && submissions.stream().allMatch(Submission::isRejected)) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                status = 503;
+            }
+            send(exchange, status, json.append("]}").toString());
+            return;
+        }
+
+        Submission submission;
+        if (contentType.startsWith("text/csv")) {
+            Puzzle puzzle = readCsvPuzzle(body);
+            submission = submit(puzzle.getName(), puzzle.getRowClues(), puzzle.getColClues(), defaultDeadline);
+        } else {
+            submission = submitJson(new String(body, StandardCharsets.UTF_8));
+        }
+        awaitAll(List.of(submission), wait);
+        sendSubmission(exchange, submission);
+    }
+
+    private void handleJob(HttpExchange exchange) throws IOException, InterruptedException {
+        String id = exchange.getRequestURI().getPath().substring("/jobs/".length());
+        Job job;
+        synchronized (jobs) {
+            job = jobs.get(id);
+        }
+        if (job == null) {
+            send(exchange, 404, error("No job " + id + ", or it has fallen out of the cache"));
+            return;
+        }
+        Submission submission = new Submission(job, true, job.name, job.size);
+        awaitAll(List.of(submission), waitFor(exchange.getRequestURI()));
+        sendSubmission(exchange, submission);
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        SolverStatistics statistics = SolverStatistics.getInstance();
+        int cachedJobs;
+        synchronized (jobs) {
+            cachedJobs = jobs.size();
+        }
+        send(exchange, 200, "{\"queued\":" + workers.getQueue().size() + ",\"queueCapacity\":" + queueCapacity
+                            + ",\"running\":" + workers.getActiveCount() + ",\"workers\":" + workerCount
+                            + ",\"cachedJobs\":" + cachedJobs + ",\"indexedPuzzles\":" + resultIndex.map(ResultIndex::size).orElse(0) + ",\"solves\":" + statistics.getSolveCount()
+                            + ",\"lineSolves\":" + statistics.getLineSolveCount() + ",\"lastSolve\":" + statistics.getLastSolve() + "}");
+    }
+
+    private static void sendSubmission(HttpExchange exchange, Submission submission) throws IOException {
+        if (submission.isRejected()) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            send(exchange, 503, submission.toJson());
+        } else {
+            send(exchange, submission.job.isFinished() ? 200 : 202, submission.toJson());
+        }
+    }
+
+    private Submission submitJson(String text) throws IOException {
+        Object parsed;
+        try {
+            parsed = JsonReader.read(text);
+        } catch (IOException e) {
+            throw new BadRequestException("Invalid JSON: " + e.getMessage());
+        }
+        if (!(parsed instanceof Map<?, ?> request)) {
+            throw new BadRequestException("The request must be a JSON object");
+        }
+
+        String name = request.get("name") instanceof String requestName ? requestName : "request";
+        Duration deadline = defaultDeadline;
+        if (request.get("deadlineMillis") instanceof Number millis) {
+            deadline = Duration.ofMillis(Math.max(1, millis.longValue()));
+        }
+
+        int[][] rowClues;
+        int[][] colClues;
+        if (request.containsKey("grid")) {
+            int[][] grid = readIntArrays(request.get("grid"), "grid");
+            int row = 0;
+            while (row < grid.length) {
+                if (grid[row].length != grid[0].length) {
+                    throw new BadRequestException("Row " + (row + 1) + " of the grid is " + grid[row].length + " long but the first is " + grid[0].length);
+                }
+                for (int cell : grid[row]) {
+                    if (cell != 0 && cell != 1) {
+                        throw new BadRequestException("Grid cells must be 0 or 1 but row " + (row + 1) + " has " + cell);
+                    }
+                }
+                row++;
+            }
+            checkLineCount(grid.length, "rows");
+            checkLineCount(grid[0].length, "columns");
+            rowClues = PicrossClues.rowClues(grid);
+            colClues = PicrossClues.colClues(grid);
+        } else {
+            rowClues = readIntArrays(request.get("rows"), "rows");
+            colClues = readIntArrays(request.get("cols"), "cols");
+            checkLineCount(rowClues.length, "rows");
+            checkLineCount(colClues.length, "columns");
+            checkClues(rowClues, colClues.length, "Row");
+            checkClues(colClues, rowClues.length, "Column");
+        }
+        return submit(name, rowClues, colClues, deadline);
+    }
+
+    // with the same limits as clues sent as JSON, checking the size in the header before the puzzle is read
+    private static Puzzle readCsvPuzzle(byte[] body) throws IOException {
+        try {
+            int[] size = PuzzleCsvReader.readSize(new ByteArrayInputStream(body), "request");
+            checkLineCount(size[0], "rows");
+            checkLineCount(size[1], "columns");
+            Puzzle puzzle = PuzzleCsvReader.read(new ByteArrayInputStream(body), "request");
+            checkClues(puzzle.getRowClues(), puzzle.getColClues().length, "Row");
+            checkClues(puzzle.getColClues(), puzzle.getRowClues().length, "Column");
+            return puzzle;
+        } catch (BadRequestException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
+    // with the same limits as clues sent as JSON, checking the size before the puzzle is read
+    private static Puzzle readLibraryPuzzle(PuzzleLibrary library, int index) throws IOException {
+        try {
+            checkLineCount(library.getRowCount(index), "rows");
+            checkLineCount(library.getColCount(index), "columns");
+            Puzzle puzzle = library.read(index);
+            checkClues(puzzle.getRowClues(), puzzle.getColClues().length, "Row");
+            checkClues(puzzle.getColClues(), puzzle.getRowClues().length, "Column");
+            return puzzle;
+        } catch (BadRequestException e) {
+            throw new BadRequestException("Puzzle " + index + " of the library: " + e.getMessage());
+        } catch (IOException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
+    private static int[][] readIntArrays(Object value, String field) throws IOException {
+        if (!(value instanceof List<?> lines) || lines.isEmpty()) {
+            throw new BadRequestException("\"" + field + "\" must be a non-empty array of arrays of numbers");
+        }
+        int[][] arrays = new int[lines.size()][];
+        int index = 0;
+        while (index < arrays.length) {
+            if (!(lines.get(index) instanceof List<?> numbers)) {
+                throw new BadRequestException("\"" + field + "\" entry " + (index + 1) + " is not an array");
+            }
+            arrays[index] = new int[numbers.size()];
+            int position = 0;
+            while (position < numbers.size()) {
+                if (!(numbers.get(position) instanceof Long number) || number < 0 || number > Integer.MAX_VALUE) {
+                    throw new BadRequestException("\"" + field + "\" entry " + (index + 1) + " holds " + numbers.get(position) + ", which is not a whole number");
+                }
+                arrays[index][position] = number.intValue();
+                position++;
+            }
+            index++;
+        }
+        return arrays;
+    }
+
+    private static void checkLineCount(int count, String what) throws IOException {
+        if (count > MAX_LINES) {
+            throw new BadRequestException("There are " + count + " " + what + " but at most " + MAX_LINES + " are taken");
+        }
+    }
+
+    // an empty clue is taken as [0], and a line's clues have to fit in it with a cell between each
+    private static void checkClues(int[][] clues, int lineLength, String what) throws IOException {
+        int line = 0;
+        while (line < clues.length) {
+            if (clues[line].length == 0) {
+                clues[line] = new int[] {0};
+            }
+            long needed = -1;
+            for (int clue : clues[line]) {
+                if (clue == 0 && clues[line].length > 1) {
+                    throw new BadRequestException(what + " " + (line + 1) + " has a 0 among other clues");
+                }
+                needed += clue + 1;
+            }
+            if (needed > lineLength) {
+                throw new BadRequestException(what + " " + (line + 1) + " needs " + needed + " cells but is only " + lineLength + " long");
+            }
+            line++;
+        }
+    }
+
+    // finds the job for these clues or any mirror image, rotation or transpose of them, or starts one when there is none
+    // or the last one timed out or failed. Puzzles already in the result index are answered without queueing them.
+    private Submission submit(String name, int[][] rowClues, int[][] colClues, Duration deadline) {
+        CanonicalClues canonicalClues = CanonicalClues.of(rowClues, colClues);
+        String id = canonicalClues.getHash();
+        String size = rowClues.length + "x" + colClues.length;
+        synchronized (jobs) {
+            Job existing = jobs.get(id);
+            if (existing != null && existing.canonicalClues.equals(canonicalClues) && !existing.hasFailed()) {
+                return new Submission(existing, true, name, size);
+            }
+            Job job = new Job(id, canonicalClues, name, size);
+            Optional<BatchSolver.Result> indexed = batchSolver.lookUp(name, canonicalClues, size, 0);
+            if (indexed.isPresent()) {
+                job.startTime = job.acceptedTime;
+                job.task = SolverTask.submit(Runnable::run, indexed::get, Optional.empty());
+                jobs.put(id, job);
+                return new Submission(job, true, name, size);
+            }
+            try {
+                job.task = SolverTask.submit(workers, () -> {
+                    job.startTime = System.nanoTime();
+                    return batchSolver.solveClues(name, rowClues, colClues, 0);
+                }, Optional.of(deadline));
+            } catch (RejectedExecutionException e) {
+                return new Submission(job, false, name, size);
+            }
+            jobs.put(id, job);
+            return new Submission(job, false, name, size);
+        }
+    }
+
+    private static void awaitAll(List<Submission> submissions, Duration wait) throws InterruptedException {
+        long deadline = System.nanoTime() + wait.toNanos();
+        for (Submission submission : submissions) {
+            if (submission.job.task != null) {
+                submission.job.task.awaitDone(Duration.ofNanos(Math.max(0, deadline - System.nanoTime())));
+            }
+        }
+    }
+
+    private static Duration waitFor(URI uri) throws IOException {
+        String query = uri.getRawQuery();
+        if (query == null) {
+            return Duration.ZERO;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("wait=")) {
+                try {
+                    long millis = Long.parseLong(parameter.substring("wait=".length()));
+                    return Duration.ofMillis(Math.max(0, Math.min(millis, MAX_WAIT.toMillis())));
+                } catch (NumberFormatException e) {
+                    throw new BadRequestException("wait must be a number of milliseconds");
+                }
+            }
+        }
+        return Duration.ZERO;
+    }
+
+    private static byte[] readBody(InputStream input) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1 << 16];
+        int read = input.read(buffer);
+        while (read >= 0) {
+            body.write(buffer, 0, read);
+            if (body.size() > MAX_BODY_BYTES) {
+                throw new BadRequestException("The request is larger than " + MAX_BODY_BYTES + " bytes");
+            }
+            read = input.read(buffer);
+        }
+        return body.toByteArray();
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + BatchSolver.quote(message) + "}";
+    }
+
+    private static class BadRequestException extends IOException {
+        private final static long serialVersionUID = 1L;
+
+        private BadRequestException(String message) {
+            super(message);
+        }
+    }
+
+    private static class Job {
+        private final String id;
+        private final CanonicalClues canonicalClues;
+        private final String name;
+        private final String size;
+        private final long acceptedTime = System.nanoTime();
+        private volatile long startTime = 0;
+        private volatile SolverTask<BatchSolver.Result> task;
+
+        private Job(String id, CanonicalClues canonicalClues, String name, String size) {
+            this.id = id;
+            this.canonicalClues = canonicalClues;
+            this.name = name;
+            this.size = size;
+        }
+
+        private boolean isFinished() {
+            return task != null && task.isDone();
+        }
+
+        private boolean hasFailed() {
+            return isFinished() && task.getResult().isEmpty();
+        }
+
+        private String status() {
+            if (!isFinished()) {
+                return startTime == 0 ? "QUEUED" : "RUNNING";
+            } else if (task.isTimedOut()) {
+                return "TIMED_OUT";
+            }
+            return task.getResult().isPresent() ? "DONE" : "FAILED";
+        }
+    }
+
+    // The job may have been started for a mirror image, rotation or transpose of these clues, under another name, so
+    // the name and size reported are the submission's own
+    private static class Submission {
+        private final Job job;
+        // whether the job was there already rather than started for this request
+        private final boolean existing;
+        private final String name;
+        private final String size;
+
+        private Submission(Job job, boolean existing, String name, String size) {
+            this.job = job;
+            this.existing = existing;
+            this.name = name;
+            this.size = size;
+        }
+
+        private boolean isRejected() {
+            return job.task == null;
+        }
+
+        private String toJson() {
+            StringBuilder json = new StringBuilder("{\"id\":").append(BatchSolver.quote(job.id))
+                                                              .append(",\"name\":").append(BatchSolver.quote(name))
+                                                              .append(",\"size\":").append(BatchSolver.quote(size))
+                                                              .append(",\"status\":").append(BatchSolver.quote(isRejected() ? "REJECTED" : job.status()))
+                                                              .append(",\"cached\":").append(existing);
+            if (isRejected()) {
+                return json.append(",\"error\":\"The queue is full\"}").toString();
+            }
+            long queuedNanos = (job.startTime == 0 ? System.nanoTime() : job.startTime) - job.acceptedTime;
+            json.append(",\"queuedMillis\":").append(queuedNanos / 1_000_000);
+            Optional<BatchSolver.Result> result = job.task.getResult();
+            if (result.isPresent()) {
+                json.append(",\"result\":").append(result.get().toJson(name));
+            }
+            return json.append('}').toString();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package Headless;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import Puzzles.Puzzle;
+import Puzzles.PuzzleCsvWriter;
+import Puzzles.PuzzleGenerator;
+import Puzzles.PuzzleLibrary;
+import Puzzles.PuzzleLibraryWriter;
+import Solver.LineSolverEngine;
+
+// Writes a reproducible corpus of random puzzles for load testing the solver, at sizes beyond what the editor lets
+// anyone draw. Each puzzle is saved as a CSV the editor can open, and labels.tsv records how the current solver does on
+// it, one tab separated line per puzzle: solved by propagation alone, solved with guessing, not solved, or not checked
+// when guessing was skipped. With --binary the puzzles all go into a single PuzzleLibrary named corpus.picl instead.
+//
+// usage: StressCorpus [--seed n] [--sizes 25x25,100,...] [--fill 30,50,...] [--count n] [--threads n]
+//                     [--engine EXTREMES|DISTRIBUTIONS] [--guess-up-to cells] [--no-labels] [--binary]
+//                     <output directory>
+//
+// Guess and check is only tried on puzzles with at most --guess-up-to cells, since on large random grids it can run
+// for hours.
+public class StressCorpus {
+    public static enum Label { PROPAGATION, GUESSING, UNSOLVED, UNCHECKED }
+    // not a .csv, so that BatchSolver and PuzzleLibraryTool do not take it for a puzzle
+    private final static String LABELS_FILE = "labels.tsv";
+    private final static String LIBRARY_FILE = "corpus" + PuzzleLibrary.FILE_EXTENSION;
+    private long seed = 1;
+    private ArrayList<int[]> sizes = new ArrayList<>();
+    private ArrayList<Integer> fillPercents = new ArrayList<>();
+    private int countPerCase = 5;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private LineSolverEngine lineSolverEngine = LineSolverEngine.EXTREMES;
+    private long maxGuessingCells = 2500;
+    private boolean labelling = true;
+    private boolean writingLibrary = false;
+
+    public static void main(String[] args) {
+        StressCorpus corpus = new StressCorpus();
+        Optional<Path> directory = Optional.empty();
+        try {
+            int index = 0;
+            while (index < args.length) {
+                switch (args[index]) {
+                    case "--seed" ->        corpus.setSeed(Long.parseLong(args[++index]));
+                    case "--sizes" ->       corpus.setSizes(args[++index]);
+                    case "--fill" ->        corpus.setFillPercents(args[++index]);
+                    case "--count" ->       corpus.setCountPerCase(Integer.parseInt(args[++index]));
+                    case "--threads" ->     corpus.setThreadCount(Integer.parseInt(args[++index]));
+                    case "--engine" ->      corpus.setLineSolverEngine(LineSolverEngine.valueOf(args[++index].toUpperCase()));
+                    case "--guess-up-to" -> corpus.setMaxGuessingCells(Long.parseLong(args[++index]));
+                    case "--no-labels" ->   corpus.setLabelling(false);
+                    case "--binary" ->      corpus.setWritingLibrary(true);
+                    default -> {
+                        if (args[index].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option " + args[index]);
+                        }
+                        directory = Optional.of(Paths.get(args[index]));
+                    }
+                }
+                index++;
+            }
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+            directory = Optional.empty();
+        }
+        if (directory.isEmpty() || corpus.threadCount <= 0 || corpus.countPerCase <= 0) {
+            System.err.println("usage: StressCorpus [--seed n] [--sizes 25x25,100,...] [--fill 30,50,...] [--count n] [--threads n] "
+                               + "[--engine EXTREMES|DISTRIBUTIONS] [--guess-up-to cells] [--no-labels] [--binary] <output directory>");
+            System.exit(2);
+        }
+
+        try {
+            corpus.write(directory.get());
+        } catch (IOException e) {
+            System.err.println("Could not write the corpus to " + directory.get() + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    // sizes are given as rowsxcols, or a single number for a square grid
+    public void setSizes(String sizeList) {
+        sizes = new ArrayList<>();
+        for (String size : sizeList.split(",")) {
+            String[] dimensions = size.trim().toLowerCase().split("x");
+            int rowCount = Integer.parseInt(dimensions[0].trim());
+            int colCount = dimensions.length > 1 ? Integer.parseInt(dimensions[1].trim()) : rowCount;
+            if (rowCount <= 0 || colCount <= 0 || dimensions.length > 2) {
+                throw new IllegalArgumentException("Invalid size " + size);
+            }
+            sizes.add(new int[] {rowCount, colCount});
+        }
+    }
+
+    public void setFillPercents(String fillList) {
+        fillPercents = new ArrayList<>();
+        for (String fill : fillList.split(",")) {
+            int fillPercent = Integer.parseInt(fill.trim());
+            if (fillPercent < 0 || fillPercent > 100) {
+                throw new IllegalArgumentException("Invalid fill percent " + fill);
+            }
+            fillPercents.add(fillPercent);
+        }
+    }
+
+    public void setCountPerCase(int countPerCase) {
+        this.countPerCase = countPerCase;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    public void setLineSolverEngine(LineSolverEngine lineSolverEngine) {
+        this.lineSolverEngine = lineSolverEngine;
+    }
+
+    public void setMaxGuessingCells(long maxGuessingCells) {
+        this.maxGuessingCells = maxGuessingCells;
+    }
+
+    public void setLabelling(boolean labelling) {
+        this.labelling = labelling;
+    }
+
+    public void setWritingLibrary(boolean writingLibrary) {
+        this.writingLibrary = writingLibrary;
+    }
+
+    // makes countPerCase puzzles for every size and fill percent, writing each as soon as it is made
+    public void write(Path directory) throws IOException {
+        if (sizes.isEmpty()) {
+            setSizes("25,50,100,250,500,1000");
+        }
+        if (fillPercents.isEmpty()) {
+            setFillPercents("30,50,70");
+        }
+        Files.createDirectories(directory);
+
+        PuzzleGenerator generator = new PuzzleGenerator(seed);
+        ExecutorService pool = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "stress-corpus");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (PrintWriter labels = new PrintWriter(Files.newBufferedWriter(directory.resolve(LABELS_FILE), StandardCharsets.UTF_8));
+             PuzzleLibraryWriter library = writingLibrary ? PuzzleLibraryWriter.create(directory.resolve(LIBRARY_FILE)) : null) {
+            labels.println("# seed " + seed);
+            labels.println("name\trows\tcols\tfill\tlabel\tsolveMillis\tguessMillis");
+            ArrayList<Future<LabelledPuzzle>> futures = new ArrayList<>();
+            for (int[] size : sizes) {
+                for (int fillPercent : fillPercents) {
+                    int index = 0;
+                    while (index < countPerCase) {
+                        int puzzleIndex = index;
+                        futures.add(pool.submit(() -> makePuzzle(generator.generate(size[0], size[1], fillPercent, puzzleIndex), fillPercent, directory)));
+                        index++;
+                    }
+                }
+            }
+            // the library is written here rather than on the pool since its writer is not thread safe
+            for (Future<LabelledPuzzle> future : futures) {
+                LabelledPuzzle labelledPuzzle = future.get();
+                if (library != null) {
+                    library.add(labelledPuzzle.puzzle);
+                }
+                System.out.println(labelledPuzzle.labels);
+                labels.println(labelledPuzzle.labels);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IOException("Making the corpus failed: " + e.getCause(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // writes the puzzle as a CSV unless it is going into the library, and works out its line of labels.tsv
+    private LabelledPuzzle makePuzzle(Puzzle puzzle, int fillPercent, Path directory) throws IOException {
+        if (!writingLibrary) {
+            PuzzleCsvWriter.write(directory.resolve(puzzle.getName() + ".csv"), puzzle.getSolution());
+        }
+        return new LabelledPuzzle(puzzle, label(puzzle, fillPercent));
+    }
+
+    private String label(Puzzle puzzle, int fillPercent) {
+        String line = puzzle.getName() + "\t" + puzzle.getRowCount() + "\t" + puzzle.getColCount() + "\t" + fillPercent + "\t";
+        if (!labelling) {
+            return line + Label.UNCHECKED + "\t\t";
+        }
+
+        boolean guessing = (long) puzzle.getRowCount() * puzzle.getColCount() <= maxGuessingCells;
+        BatchSolver batchSolver = new BatchSolver();
+        batchSolver.setLineSolverEngine(lineSolverEngine);
+        batchSolver.setTryingGuessAndCheck(guessing);
+        BatchSolver.Result result = batchSolver.solve(puzzle, 0);
+        Label label = switch (result.getOutcome()) {
+            case SOLVABLE -> Label.PROPAGATION;
+            case GUESSING -> Label.GUESSING;
+            default -> guessing ? Label.UNSOLVED : Label.UNCHECKED;
+        };
+        return line + label + "\t" + String.format(Locale.ROOT, "%.1f", result.getSolveMillis()) + "\t" + String.format(Locale.ROOT, "%.1f", result.getGuessMillis());
+    }
+
+    private static class LabelledPuzzle {
+        private final Puzzle puzzle;
+        private final String labels;
+
+        private LabelledPuzzle(Puzzle puzzle, String labels) {
+            this.puzzle = puzzle;
+            this.labels = labels;
+        }
+    }
+}
@@ -1,13 +1,17 @@
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Optional;
-import java.util.Scanner;
 
 import Picross.PicrossEditor;
 import Picross.PicrossGrid;
 import Picross.PicrossViewer;
+import Puzzles.Puzzle;
+import Puzzles.PuzzleCsvReader;
+import Solver.IncrementalSolver;
 import Solver.PicrossSolver;
+import Solver.SolverStatistics;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.stage.FileChooser;
@@ -16,8 +20,10 @@ import javafx.stage.Stage;
 import javafx.scene.Group;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.ScrollPane;
+import javafx.scene.control.Slider;
 import javafx.scene.control.TextField;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
@@ -75,6 +81,7 @@ public class Main extends Application {
 			buttonCreate.requestFocus();
 			
 			PicrossSolver.maybeRunTests();
+			SolverStatistics.register();
 		} catch(Exception e) {
 			e.printStackTrace();
 		}
@@ -213,20 +220,21 @@ public class Main extends Application {
 		fileChooser.getExtensionFilters().add(new ExtensionFilter("CSV Files", "*.csv"));
 		File savedWork = fileChooser.showOpenDialog(stage);
 
-		try (Scanner scanner = new Scanner(savedWork)) {
-			scanner.useDelimiter(",|\\n");
-			
-			Optional<PicrossEditor> picrossEditor = openEditor(stage, Integer.parseInt(scanner.next()), Integer.parseInt(scanner.next()));
-			if (picrossEditor.isEmpty()) {
-				return;
-			}
+		if (savedWork == null) {
+			return;
+		}
 
-			if (!picrossEditor.get().resumeWork(savedWork)) {
-				displayFailedLoadWindow(stage, "Failed to load data!");
-			}
-			
-		} catch(Exception e) {
-			e.printStackTrace();
+		Puzzle puzzle;
+		try {
+			puzzle = PuzzleCsvReader.read(savedWork.toPath());
+		} catch (IOException e) {
+			displayFailedLoadWindow(stage, "Failed to load data!\n" + e.getMessage());
+			return;
+		}
+
+		Optional<PicrossEditor> picrossEditor = openEditor(stage, puzzle.getRowCount(), puzzle.getColCount());
+		if (picrossEditor.isPresent() && !picrossEditor.get().resumeWork(puzzle)) {
+			displayFailedLoadWindow(stage, "Failed to load data!");
 		}
 	}
 
@@ -236,6 +244,7 @@ public class Main extends Application {
 		Label labelWarning = new Label(failureText);
 		labelWarning.setTextAlignment(TextAlignment.CENTER);
 		labelWarning.setPadding(new Insets(10,10,10,10));
+		labelWarning.setWrapText(true);
 		
 		Button buttonOK = new Button("OK");
 		buttonOK.setOnAction(e -> getDimensionsForEditor(stage, true));
@@ -270,7 +279,7 @@ public class Main extends Application {
 				if (picrossEditor.hasUnsavedChanges()) {
 					confirmAbandonUnsavedWork(stage, picrossEditor);
 				} else {
-					picrossEditor.timer.stop();
+					picrossEditor.stop();
 					getDimensionsForEditor(stage, true);
 				}
 				picrossEditor.requestFocus();
@@ -307,12 +316,26 @@ public class Main extends Application {
 			labelInstructions.setTextAlignment(TextAlignment.CENTER);
 			labelInstructions.setPadding(new Insets(10,10,10,10));
 			
-			VBox vBoxHeader = new VBox(hBoxOptions, labelInstructions);
+			Label labelLiveCheck = new Label();
+			CheckBox checkBoxLiveCheck = new CheckBox("Check while drawing");
+			checkBoxLiveCheck.setSelected(true);
+			checkBoxLiveCheck.selectedProperty().addListener((observable, oldValue, newValue) -> {
+				picrossEditor.setCheckingLive(newValue);
+				labelLiveCheck.setText("");
+				picrossEditor.requestFocus();
+			});
+			picrossEditor.setUIUpdateOnChecked(result -> labelLiveCheck.setText(describeLiveCheck(result)));
+			picrossEditor.setCheckingLive(true);
+			HBox hBoxLiveCheck = new HBox(10, checkBoxLiveCheck, labelLiveCheck);
+			hBoxLiveCheck.setAlignment(Pos.CENTER);
+			hBoxLiveCheck.setPadding(new Insets(0,10,10,10));
+
+			VBox vBoxHeader = new VBox(hBoxOptions, labelInstructions, hBoxLiveCheck);
 			vBoxHeader.setAlignment(Pos.CENTER);
 			borderPaneRoot.setTop(vBoxHeader);
 			
 			stage.setScene(sceneEditor);
-			stage.setOnCloseRequest(e -> picrossEditor.timer.stop());
+			stage.setOnCloseRequest(e -> picrossEditor.stop());
 			
 			picrossEditor.timer.start();
 
@@ -327,6 +350,14 @@ public class Main extends Application {
 		}
 	}
 	
+	private static String describeLiveCheck(IncrementalSolver.Result result) {
+		return switch (result.getStatus()) {
+			case SOLVABLE ->       "Solvable";
+			case NEEDS_GUESSING -> "Not solvable without guessing: " + result.getUndecidedCount() + " cells undecided";
+			case CONTRADICTION ->  "The clues contradict each other";
+		};
+	}
+
 	public void displaySolvability(int[][] rowHeaders, int[][] colHeaders, Optional<int[][]> solution, int rowCount, int colCount, Optional<Double> height, Optional<Double> width) {
         try {
             Stage secondaryStage = new Stage();
@@ -337,24 +368,33 @@ public class Main extends Application {
             labelResult.setTextAlignment(TextAlignment.CENTER);
             labelResult.setPadding(new Insets(10,10,10,10));
 			labelResult.setText("Solving...");
-            borderPaneCheck.setTop(labelResult);
 
             Pane paneSpacer1 = new Pane();
             HBox.setHgrow(paneSpacer1, Priority.ALWAYS);
 
 			PicrossViewer picrossViewer = new PicrossViewer(rowCount, colCount, rowHeaders, colHeaders, solution);
+
+			// a log scale from 1 to 10,000 lines per second
+			Label labelSpeed = new Label("Speed");
+			Slider sliderSpeed = new Slider(0, 4, Math.log10(PicrossViewer.DEFAULT_LINES_PER_SECOND));
+			sliderSpeed.valueProperty().addListener((observable, oldValue, newValue) -> picrossViewer.setLinesPerSecond(Math.pow(10, newValue.doubleValue())));
+			HBox hBoxTop = new HBox(labelResult, paneSpacer1, labelSpeed, sliderSpeed);
+			hBoxTop.setAlignment(Pos.CENTER_LEFT);
+			hBoxTop.setPadding(new Insets(0,10,0,0));
+            borderPaneCheck.setTop(hBoxTop);
             ScrollPane scrollPanePicturePicross = new ScrollPane(picrossViewer.getGroupAsParent());
             borderPaneCheck.setCenter(scrollPanePicturePicross);
 
 			Scene secondaryScene = new Scene(borderPaneCheck);
             secondaryStage.setScene(secondaryScene);
-			secondaryStage.setOnCloseRequest(e -> picrossViewer.timer.stop());
+			secondaryStage.setOnCloseRequest(e -> picrossViewer.stop());
             secondaryStage.show();
 
 			Platform.runLater(() -> picrossViewer.timer.start());
 
 			picrossViewer.setUIUpdateOnComplete(() -> updateSolverWindowWhenFinished(secondaryStage, borderPaneCheck, labelResult, picrossViewer));
 			picrossViewer.setUIUpdateAddSkipAnimationButton(() -> addSkipSolverAnimationButton(borderPaneCheck, picrossViewer));
+			picrossViewer.setUIUpdateOnProgress(lineSolves -> labelResult.setText("Solving... " + lineSolves + " lines solved"));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -427,7 +467,7 @@ public class Main extends Application {
 		Button buttonYes = new Button("Yes");
 		buttonYes.setOnAction(e -> {
 			secondaryStage.close();
-			picrossEditor.timer.stop();
+			picrossEditor.stop();
 			getDimensionsForEditor(stage, true);
 		});
 		
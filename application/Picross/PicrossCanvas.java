@@ -0,0 +1,282 @@
+package Picross;
+
+import java.util.BitSet;
+
+import javafx.application.Platform;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+
+// All the cells of a grid drawn on one canvas, in place of a node per cell. The canvas only covers the cells that can be
+// seen through the scroll panes and window around it, and after each layout pass it draws the cells that came into view
+// or changed since the last one. Cells are laid out as the label rows and columns of the grid are: cellSize wide, plus
+// a pixel for the thicker line before every fifth one.
+class PicrossCanvas extends Region {
+    private final static byte FILLED = 1;
+    private final static byte CROSSED = 2;
+    private final static Color CURSOR_COLOR = Color.rgb(0, 247, 255);
+    private final int rowCount;
+    private final int colCount;
+    private final byte[] cellStates;
+    private final Canvas canvas = new Canvas();
+    private final BitSet dirtyCells = new BitSet();
+    private final Runnable drawAfterLayout = this::drawVisibleCells;
+    private int cursorRow = -1;
+    private int cursorCol = -1;
+    private boolean showingMarks = true;
+    private boolean drawingEverything = false;
+    // the cells the canvas covers, from first up to but not including last
+    private int firstRow = 0;
+    private int lastRow = 0;
+    private int firstCol = 0;
+    private int lastCol = 0;
+
+    public PicrossCanvas(int rowCount, int colCount) {
+        this.rowCount = rowCount;
+        this.colCount = colCount;
+        cellStates = new byte[rowCount * colCount];
+        canvas.setManaged(false);
+        getChildren().add(canvas);
+
+        sceneProperty().addListener((observable, oldScene, newScene) -> {
+            if (oldScene != null) {
+                oldScene.removePostLayoutPulseListener(drawAfterLayout);
+            }
+            if (newScene != null) {
+                newScene.addPostLayoutPulseListener(drawAfterLayout);
+            }
+        });
+    }
+
+    public boolean isFilled(int row, int col) {
+        return cellStates[row * colCount + col] == FILLED;
+    }
+
+    public void setFilled(int row, int col) {
+        setState(row, col, FILLED);
+    }
+
+    public void setCrossed(int row, int col) {
+        setState(row, col, CROSSED);
+    }
+
+    public void clear(int row, int col) {
+        setState(row, col, (byte) 0);
+    }
+
+    private void setState(int row, int col, byte state) {
+        if (cellStates[row * colCount + col] != state) {
+            cellStates[row * colCount + col] = state;
+            markDirty(row, col);
+        }
+    }
+
+    public void setCursor(int row, int col) {
+        removeCursor();
+        cursorRow = row;
+        cursorCol = col;
+        markDirty(row, col);
+    }
+
+    public void removeCursor() {
+        if (cursorRow >= 0) {
+            markDirty(cursorRow, cursorCol);
+        }
+        cursorRow = -1;
+        cursorCol = -1;
+    }
+
+    // hides the filled and crossed cells, for an image of the puzzle without its solution
+    public void setShowingMarks(boolean showingMarks) {
+        this.showingMarks = showingMarks;
+        redrawNow();
+    }
+
+    // covers the whole grid rather than just what can be seen, so the grid can be snapshotted. Canvases only go up to
+    // the largest texture the graphics card allows, so this can fail for very large grids.
+    public void setDrawingEverything(boolean drawingEverything) {
+        this.drawingEverything = drawingEverything;
+        redrawNow();
+    }
+
+    public int rowAt(double y) {
+        return indexAt(y, rowCount);
+    }
+
+    public int colAt(double x) {
+        return indexAt(x, colCount);
+    }
+
+    private static int indexAt(double position, int count) {
+        int blockSize = 5 * PicrossGrid.cellSize + 1;
+        int block = (int) Math.floor(position / blockSize);
+        int withinBlock = (int) Math.floor(position) - block * blockSize;
+        int index = 5 * block + (withinBlock < PicrossGrid.cellSize + 1 ? 0 : 1 + (withinBlock - PicrossGrid.cellSize - 1) / PicrossGrid.cellSize);
+        return Math.max(0, Math.min(index, count - 1));
+    }
+
+    // where the cell at index starts, counting the extra pixel before every fifth cell up to it
+    private static int offsetOf(int index) {
+        return index * PicrossGrid.cellSize + (index + 4) / 5;
+    }
+
+    private static int sizeOf(int index) {
+        return index % 5 == 0 ? PicrossGrid.cellSize + 1 : PicrossGrid.cellSize;
+    }
+
+    @Override
+    protected double computeMinWidth(double height) {
+        return offsetOf(colCount);
+    }
+
+    @Override
+    protected double computePrefWidth(double height) {
+        return offsetOf(colCount);
+    }
+
+    @Override
+    protected double computeMaxWidth(double height) {
+        return offsetOf(colCount);
+    }
+
+    @Override
+    protected double computeMinHeight(double width) {
+        return offsetOf(rowCount);
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        return offsetOf(rowCount);
+    }
+
+    @Override
+    protected double computeMaxHeight(double width) {
+        return offsetOf(rowCount);
+    }
+
+    private void markDirty(int row, int col) {
+        dirtyCells.set(row * colCount + col);
+        Platform.requestNextPulse();
+    }
+
+    private void redrawNow() {
+        lastRow = firstRow;
+        drawVisibleCells();
+    }
+
+    // moves the canvas over the cells in view and draws them all if they changed, or else just the dirty ones
+    private void drawVisibleCells() {
+        Bounds visible = visibleBounds();
+        int newFirstRow = 0;
+        int newLastRow = 0;
+        int newFirstCol = 0;
+        int newLastCol = 0;
+        if (visible != null && visible.getWidth() > 0 && visible.getHeight() > 0) {
+            newFirstRow = rowAt(visible.getMinY());
+            newLastRow = rowAt(visible.getMaxY() - 1) + 1;
+            newFirstCol = colAt(visible.getMinX());
+            newLastCol = colAt(visible.getMaxX() - 1) + 1;
+        }
+
+        GraphicsContext graphics = canvas.getGraphicsContext2D();
+        if (newFirstRow != firstRow || newLastRow != lastRow || newFirstCol != firstCol || newLastCol != lastCol) {
+            firstRow = newFirstRow;
+            lastRow = newLastRow;
+            firstCol = newFirstCol;
+            lastCol = newLastCol;
+            canvas.relocate(offsetOf(firstCol), offsetOf(firstRow));
+            canvas.setWidth(offsetOf(lastCol) - offsetOf(firstCol));
+            canvas.setHeight(offsetOf(lastRow) - offsetOf(firstRow));
+
+            int row = firstRow;
+            while (row < lastRow) {
+                int col = firstCol;
+                while (col < lastCol) {
+                    drawCell(graphics, row, col);
+                    col++;
+                }
+                row++;
+            }
+        } else {
+            int cell = dirtyCells.nextSetBit(0);
+            while (cell >= 0) {
+                int row = cell / colCount;
+                int col = cell % colCount;
+                if (row >= firstRow && row < lastRow && col >= firstCol && col < lastCol) {
+                    drawCell(graphics, row, col);
+                }
+                cell = dirtyCells.nextSetBit(cell + 1);
+            }
+        }
+        dirtyCells.clear();
+    }
+
+    // the part of this region not cut off by the clip of any node above it or by the edges of the scene
+    private Bounds visibleBounds() {
+        Scene scene = getScene();
+        if (scene == null) {
+            return null;
+        }
+        Bounds visible = getLayoutBounds();
+        if (drawingEverything) {
+            return visible;
+        }
+
+        visible = intersect(visible, sceneToLocal(new BoundingBox(0, 0, scene.getWidth(), scene.getHeight())));
+        Node ancestor = getParent();
+        while (ancestor != null && visible != null) {
+            if (ancestor.getClip() != null) {
+                visible = intersect(visible, sceneToLocal(ancestor.localToScene(ancestor.getClip().getBoundsInParent())));
+            }
+            ancestor = ancestor.getParent();
+        }
+        return visible;
+    }
+
+    private static Bounds intersect(Bounds first, Bounds second) {
+        double minX = Math.max(first.getMinX(), second.getMinX());
+        double minY = Math.max(first.getMinY(), second.getMinY());
+        double maxX = Math.min(first.getMaxX(), second.getMaxX());
+        double maxY = Math.min(first.getMaxY(), second.getMaxY());
+        return maxX > minX && maxY > minY ? new BoundingBox(minX, minY, maxX - minX, maxY - minY) : null;
+    }
+
+    // draws a cell the way the cell style sheet used to: a black line on its right and bottom, and on its top and left
+    // too before every fifth one, with the fill or cross inset from the lines
+    private void drawCell(GraphicsContext graphics, int row, int col) {
+        double x = offsetOf(col) - offsetOf(firstCol);
+        double y = offsetOf(row) - offsetOf(firstRow);
+        double width = sizeOf(col);
+        double height = sizeOf(row);
+        byte state = showingMarks ? cellStates[row * colCount + col] : 0;
+
+        graphics.setFill(row == cursorRow && col == cursorCol ? CURSOR_COLOR : Color.WHITE);
+        graphics.fillRect(x, y, width, height);
+
+        graphics.setFill(Color.BLACK);
+        graphics.fillRect(x + width - 1, y, 1, height);
+        graphics.fillRect(x, y + height - 1, width, 1);
+        if (col % 5 == 0) {
+            graphics.fillRect(x, y, 1, height);
+        }
+        if (row % 5 == 0) {
+            graphics.fillRect(x, y, width, 1);
+        }
+
+        double top = row % 5 == 0 ? 3 : 2;
+        double left = col % 5 == 0 ? 3 : 2;
+        if (state == FILLED) {
+            graphics.fillRect(x + left, y + top, width - left - 3, height - top - 3);
+        } else if (state == CROSSED) {
+            graphics.setStroke(Color.BLACK);
+            graphics.setLineWidth(1.5);
+            graphics.strokeLine(x + left + 1.5, y + top + 1.5, x + width - 4.5, y + height - 4.5);
+            graphics.strokeLine(x + width - 4.5, y + top + 1.5, x + left + 1.5, y + height - 4.5);
+        }
+    }
+}
@@ -5,46 +5,48 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
-import java.util.Arrays;
-import java.util.Iterator;
+import java.util.BitSet;
 import java.util.PrimitiveIterator;
-import java.util.Scanner;
-import java.util.function.Function;
+import java.util.function.Consumer;
 import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import Puzzles.Puzzle;
+import Solver.IncrementalSolver;
 import Solver.PicrossSolver;
+import Solver.SolverTask;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 
+// While checking live, one IncrementalSolver follows the drawing. Each changed row and column clue is handed to it on a
+// solver thread, and it solves again only what those changes could have affected.
 public class PicrossEditor extends PicrossGrid {
-	private PicrossPane current;
+	private int currentRow = 0;
+	private int currentCol = 0;
 	private KeyCode state = KeyCode.SPACE;
 	private KeyCode direction = KeyCode.SPACE;
 	private boolean justMoved = false;
 	private boolean unsavedChanges = false;
+	private boolean checkingLive = false;
+	// made again from all the clues after a check is cancelled, since the changes it was given may not have been applied
+	private IncrementalSolver incrementalSolver = null;
+	private SolverTask<IncrementalSolver.Result> checkTask = null;
+	// rows first and then columns, as the solver numbers lines
+	private final BitSet changedLines = new BitSet();
+	private Consumer<IncrementalSolver.Result> runnableOnChecked = result -> {};
 
     public PicrossEditor(int rowCount, int colCount) {
         super(rowCount, colCount);
 
-        Arrays.stream(picrossPanes)
-		  	  .map(row -> Arrays.stream(row))
-			  .flatMap(Function.identity())
-			  .iterator()
-			  .forEachRemaining(pane -> setMouseClickForCell(pane));
+        cells.setOnMouseClicked(e -> moveCursor(cells.rowAt(e.getY()), cells.colAt(e.getX())));
         
 		gridPanePicross.setOnKeyPressed(keyPress -> handleKeyEntered(keyPress));
 		gridPanePicross.setOnKeyReleased(keyRelease -> handleKeyReleased(keyRelease));
 
-        current = picrossPanes[0][0];
-		current.setCursor();
+		cells.setCursor(currentRow, currentCol);
     }
 
-	private void setMouseClickForCell(PicrossPane cell) {
-		cell.setOnMouseClicked(e -> moveCursor(cell.getRow(), cell.getCol()));
-	}
-
 	protected void timerEvent(long lastUpdate, long time) {
 		move();
 		if (justMoved) {
@@ -54,30 +56,97 @@ public class PicrossEditor extends PicrossGrid {
 			timerMultiplier = 1;
 		}
 		colorCurrentSquare();
+		checkIfChanged();
 	}
 	
 	private void colorCurrentSquare() {
-		if (state == KeyCode.C) {
-			current.clear();
+		if (state == KeyCode.C && cells.isFilled(currentRow, currentCol)) {
+			cells.clear(currentRow, currentCol);
 			fixDisplayPostColoring();
-		} else if (state == KeyCode.Z) {
-			current.setFilled();
+		} else if (state == KeyCode.Z && !cells.isFilled(currentRow, currentCol)) {
+			cells.setFilled(currentRow, currentCol);
 			fixDisplayPostColoring();
 		}
 	}
 
 	private void fixDisplayPostColoring() {
-		updateRowLabels(current.getRow());
-		updateColLabels(current.getCol());
+		updateRowLabels(currentRow);
+		updateColLabels(currentCol);
 		resizeLabels();
+		changedLines.set(currentRow);
+		changedLines.set(rowCount + currentCol);
+	}
+
+	public void setUIUpdateOnChecked(Consumer<IncrementalSolver.Result> onChecked) {
+		runnableOnChecked = onChecked;
+	}
+
+	public void setCheckingLive(boolean checkingLive) {
+		this.checkingLive = checkingLive;
+		if (!checkingLive) {
+			cancelCheck();
+		}
+	}
+
+	// for when the editor goes away
+	public void stop() {
+		timer.stop();
+		cancelCheck();
+	}
+
+	private void cancelCheck() {
+		if (checkTask != null) {
+			checkTask.cancel();
+			checkTask = null;
+			incrementalSolver = null;
+		}
+	}
+
+	// starts a check once the last one is done if any clue changed since, so a burst of edits is checked together
+	private void checkIfChanged() {
+		if (checkTask != null) {
+			if (!checkTask.isDone()) {
+				return;
+			}
+			var result = checkTask.getResult();
+			if (result.isPresent()) {
+				runnableOnChecked.accept(result.get());
+			} else {
+				incrementalSolver = null;
+			}
+			checkTask = null;
+		}
+		if (!checkingLive || (incrementalSolver != null && changedLines.isEmpty())) {
+			return;
+		}
+
+		if (incrementalSolver == null) {
+			incrementalSolver = new IncrementalSolver(getRowLabels(), getColLabels());
+			changedLines.clear();
+		}
+		IncrementalSolver solver = incrementalSolver;
+		int[] lines = changedLines.stream().toArray();
+		int[][] clues = IntStream.of(lines)
+								 .mapToObj(line -> line < rowCount ? rowPicrossTexts[line].getNums() : colPicrossTexts[line - rowCount].getNums())
+								 .toArray(int[][]::new);
+		changedLines.clear();
+		checkTask = SolverTask.submit(() -> {
+			int index = 0;
+			while (index < lines.length) {
+				if (lines[index] < rowCount) {
+					solver.setRowClue(lines[index], clues[index]);
+				} else {
+					solver.setColClue(lines[index] - rowCount, clues[index]);
+				}
+				index++;
+			}
+			return solver.check();
+		});
 	}
 	
 	private void move() {
 		if (direction == KeyCode.SPACE) return;
 		
-		int currentRow = current.getRow();
-		int currentCol = current.getCol();
-		
 		switch (direction) {
             case RIGHT, KP_RIGHT -> moveCursor(currentRow, currentCol + 1);
             case DOWN, KP_DOWN ->   moveCursor(currentRow + 1, currentCol);
@@ -90,9 +159,9 @@ public class PicrossEditor extends PicrossGrid {
 	private void moveCursor(int row, int col) {
 		row = Math.max(0, Math.min(row, rowCount - 1));
 		col = Math.max(0, Math.min(col, colCount - 1));
-		current.removeCursor();
-		current = picrossPanes[row][col];
-		current.setCursor();
+		currentRow = row;
+		currentCol = col;
+		cells.setCursor(row, col);
 	}
 	
 	public void handleKeyEntered(KeyEvent keyEvent) {
@@ -135,7 +204,7 @@ public class PicrossEditor extends PicrossGrid {
 	private void saveRow(Writer writer, int rowIndex) throws RuntimeException {
 		try {
 			writer.write(IntStream.range(0, colCount)
-								  .map(colIndex -> picrossPanes[rowIndex][colIndex].filled() ? PicrossSolver.FILLED_CELL : PicrossSolver.CROSSED_CELL)
+								  .map(colIndex -> cells.isFilled(rowIndex, colIndex) ? PicrossSolver.FILLED_CELL : PicrossSolver.CROSSED_CELL)
 								  .mapToObj(String::valueOf)
 								  .collect(Collectors.joining(",")) + "\n");
 		} catch (IOException ioe) {
@@ -143,35 +212,36 @@ public class PicrossEditor extends PicrossGrid {
 		}
 	}
 	
-	public boolean resumeWork(File file) {
-		try (Scanner scanner = new Scanner(file)) {
-			scanner.useDelimiter("\\n");
-			scanner.next();
-			scanner.useDelimiter(",|\\n");
+	// false when the puzzle is not the size of this editor
+	public boolean resumeWork(Puzzle puzzle) {
+		if (puzzle.getRowCount() != rowCount || puzzle.getColCount() != colCount) {
+			return false;
+		}
 
-			
-			Iterator<Integer> rowIterator = IntStream.range(0, rowCount).iterator();
-			while (rowIterator.hasNext()) {
-				int row = rowIterator.next();
-				Iterator<Integer> colIterator = IntStream.range(0, colCount).iterator();
-				while (colIterator.hasNext()) {
-					readDataPoint(scanner.next().trim(), row, colIterator.next());
+		int[][] solution = puzzle.getSolution();
+		int row = 0;
+		while (row < rowCount) {
+			int col = 0;
+			while (col < colCount) {
+				if (solution[row][col] == PicrossSolver.FILLED_CELL) {
+					cells.setFilled(row, col);
 				}
+				col++;
 			}
-			
-			IntStream.range(0, rowCount)
-					 .iterator()
-					 .forEachRemaining((IntConsumer) this::updateRowLabels);
-			IntStream.range(0, colCount)
-					 .iterator()
-					 .forEachRemaining((IntConsumer) this::updateColLabels);
-			resizeLabels();
-
-			return true;
-		} catch (Exception ex) {
-			ex.printStackTrace();
-			return false;
+			row++;
 		}
+
+		IntStream.range(0, rowCount)
+				 .iterator()
+				 .forEachRemaining((IntConsumer) this::updateRowLabels);
+		IntStream.range(0, colCount)
+				 .iterator()
+				 .forEachRemaining((IntConsumer) this::updateColLabels);
+		resizeLabels();
+		cancelCheck();
+		incrementalSolver = null;
+
+		return true;
 	}
 
 	public int[][] getMatrix() { 
@@ -182,21 +252,13 @@ public class PicrossEditor extends PicrossGrid {
 			PrimitiveIterator.OfInt colIterator = IntStream.range(0, colCount).iterator();
 			while (colIterator.hasNext()) {
 				int colIndex = colIterator.next();
-				matrix[rowIndex][colIndex] = (picrossPanes[rowIndex][colIndex].filled() ? PicrossSolver.FILLED_CELL : PicrossSolver.CROSSED_CELL);
+				matrix[rowIndex][colIndex] = (cells.isFilled(rowIndex, colIndex) ? PicrossSolver.FILLED_CELL : PicrossSolver.CROSSED_CELL);
 			}
 		}
 
 		return matrix;
 	}
 
-	private void readDataPoint(String data, int row, int col) throws RuntimeException {
-		if (data.equals(String.valueOf(PicrossSolver.FILLED_CELL))) {
-			picrossPanes[row][col].setFilled();
-		} else if (!data.equals(String.valueOf(PicrossSolver.CROSSED_CELL))) {
-			throw new RuntimeException("Invalid data in file: " + data);
-		}
-	}
-	
 	public boolean hasUnsavedChanges() {
 		return unsavedChanges;
 	}
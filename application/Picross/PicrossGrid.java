@@ -3,7 +3,7 @@ package Picross;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.PrimitiveIterator;
-import java.util.function.Function;
+import java.util.function.IntPredicate;
 import java.util.stream.IntStream;
 
 import javafx.animation.AnimationTimer;
@@ -22,15 +22,16 @@ import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.RowConstraints;
+import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.TextAlignment;
 
 public abstract class PicrossGrid {
 	protected GridPane gridPanePicross = new GridPane();
-	protected PicrossPane[][] picrossPanes;
+	protected PicrossCanvas cells;
 	protected RowText[] rowPicrossTexts;
 	protected ColumnText[] colPicrossTexts;
-	private PicrossPane topLeft;
+	private StackPane topLeft;
 	protected final int rowCount;
 	protected final int colCount;
 	public static final int cellSize = 18;
@@ -40,7 +41,7 @@ public abstract class PicrossGrid {
 	public PicrossGrid(int rowCount, int colCount) {
 		this.rowCount = rowCount;
 		this.colCount = colCount;
-		picrossPanes = new PicrossPane[rowCount][colCount];
+		cells = new PicrossCanvas(rowCount, colCount);
 		rowPicrossTexts = new RowText[rowCount];
 		colPicrossTexts = new ColumnText[colCount];
 		gridPanePicross.setOnMouseClicked(e -> gridPanePicross.requestFocus());
@@ -74,7 +75,7 @@ public abstract class PicrossGrid {
 	protected abstract void timerEvent(long lastUpdate, long time);
 
 	private void addAndStyleCells() {
-		topLeft = new PicrossPane(-1, -1);
+		topLeft = new StackPane();
 		topLeft.getStyleClass().add("nums");
 		HBox topLeftBox = new HBox(topLeft);
 		topLeftBox.setAlignment(Pos.BOTTOM_RIGHT);
@@ -90,15 +91,16 @@ public abstract class PicrossGrid {
 		
 		PrimitiveIterator.OfInt rowIterator = IntStream.range(0, rowCount).iterator();
 		while (rowIterator.hasNext()) {
-			int rowIndex = rowIterator.next();
-			addRowProperties(rowIndex);
-			addARowOfCells(rowIndex);
+			addRowProperties(rowIterator.next());
 		}
 		
 		PrimitiveIterator.OfInt colIterator = IntStream.range(0, colCount).iterator();
 		while (colIterator.hasNext()) {
 			addColumnProperties(colIterator.next());
 		}
+
+		// one canvas spans every cell, since a node per cell is far too slow for large grids
+		gridPanePicross.add(cells, 1, 1, colCount, rowCount);
 	}
 
 	private void addRowProperties(int rowIndex) {
@@ -134,34 +136,20 @@ public abstract class PicrossGrid {
 		gridPanePicross.add(labelCell, colIndex + 1, 0);
 	}
 
-	private void addARowOfCells(int row) {
-		PrimitiveIterator.OfInt colIterator = IntStream.range(0, colCount).iterator();
-		while (colIterator.hasNext()) {
-			addCell(row, colIterator.next());
-		}
-	}
-
-	private PicrossPane addCell(int rowIndex, int colIndex) {
-		PicrossPane picrossPane = new PicrossPane(rowIndex, colIndex);
-		picrossPanes[rowIndex][colIndex] = picrossPane;
-		gridPanePicross.add(picrossPane, colIndex + 1, rowIndex + 1);
-		return picrossPane;
-	}
-	
 	protected void updateRowLabels(int rowIndex) {
-		rowPicrossTexts[rowIndex].updateText(collectNums(colCount, colIndex -> picrossPanes[rowIndex][colIndex]));
+		rowPicrossTexts[rowIndex].updateText(collectNums(colCount, colIndex -> cells.isFilled(rowIndex, colIndex)));
 	}
 	
 	protected void updateColLabels(int colIndex) {
-		colPicrossTexts[colIndex].updateText(collectNums(rowCount, rowIndex -> picrossPanes[rowIndex][colIndex]));
+		colPicrossTexts[colIndex].updateText(collectNums(rowCount, rowIndex -> cells.isFilled(rowIndex, colIndex)));
 	}
 
-	private int[] collectNums(int max, Function<Integer, PicrossPane> getPane) {
+	private int[] collectNums(int max, IntPredicate isFilled) {
 		LinkedList<Integer> nums = new LinkedList<>();
 		int tempBlock = 0;
 		int index = 0;
 		while (index < max) {
-			if (getPane.apply(index).filled()) {
+			if (isFilled.test(index)) {
 				tempBlock++;
 			} else if (tempBlock > 0) {
 				nums.add(tempBlock);
@@ -217,8 +205,14 @@ public abstract class PicrossGrid {
 		return gridPanePicross.getColumnConstraints();
 	}
 
+	// the cells are drawn in full just for the snapshot, since normally only those in view are
 	public WritableImage snapshot(SnapshotParameters arg0, WritableImage arg1) {
-		return gridPanePicross.snapshot(arg0, arg1);
+		cells.setDrawingEverything(true);
+		try {
+			return gridPanePicross.snapshot(arg0, arg1);
+		} finally {
+			cells.setDrawingEverything(false);
+		}
 	}
 
 	public double getWidth() {
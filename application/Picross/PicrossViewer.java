@@ -4,18 +4,16 @@ import java.awt.Desktop;
 import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.LinkedList;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
 import java.util.stream.IntStream;
 
 import javax.imageio.ImageIO;
 
 import Solver.PicrossSolver;
-import Solver.SolutionDisplayStep;
+import Solver.SolutionStepBuffer;
+import Solver.SolverTask;
 import javafx.application.Platform;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.image.WritableImage;
@@ -23,19 +21,36 @@ import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
 import javafx.stage.Stage;
 
+// Plays back the steps of a solve as they come in. Each frame plays as many whole line solves as the playback speed
+// allows, within a time budget so that the window stays responsive, and skipping plays the rest as fast as the budget
+// allows rather than all at once. The solver waits whenever it gets a buffer's worth of steps ahead of the playback, and
+// stops as soon as the viewer does.
 public class PicrossViewer extends PicrossGrid {
+	public static final double DEFAULT_LINES_PER_SECOND = 25.0;
+	private static final long FRAME_BUDGET_NANOS = 8_000_000;
+	private static final int STEP_BUFFER_SIZE = 1 << 16;
 	private PicrossSolver picrossSolver;
-    private ConcurrentLinkedQueue<SolutionDisplayStep> solutionDisplaySteps;
+	private final SolutionStepBuffer solutionDisplaySteps = new SolutionStepBuffer(STEP_BUFFER_SIZE, SolutionStepBuffer.WhenFull.WAIT);
 	private PicrossText currentPicrossText;
 	private Runnable runnableOnComplete;
 	private Runnable runnableAddSkipAnimationButton;
+	private LongConsumer runnableOnProgress = lineSolves -> {};
 	private boolean addedButton = false;
 	private boolean triedGuessing = false;
-	private Optional<Boolean> solverResult = Optional.empty();
+	private SolverTask<Boolean> solverTask;
+	// written by the solver thread and shown by the timer
+	private volatile long lineSolves = 0;
+	private long lineSolvesShown = 0;
+	private double linesPerSecond = DEFAULT_LINES_PER_SECOND;
+	// how many line solves are due to be played, built up by the time between frames
+	private double linesDue = 0;
+	private boolean skipping = false;
 
     public PicrossViewer(int rowCount, int colCount, int[][] rowHeaders, int[][] colHeaders, Optional<int[][]> solution) {
         super(rowCount, colCount);
 		picrossSolver = new PicrossSolver(rowHeaders, colHeaders, solution);
+		picrossSolver.setSolutionStepSink(solutionDisplaySteps);
+		picrossSolver.setProgressListener(lineSolveCount -> lineSolves = lineSolveCount);
 
 		IntStream.range(0, rowCount)
 				 .iterator()
@@ -47,11 +62,9 @@ public class PicrossViewer extends PicrossGrid {
 		resizeLabels();
 
 		currentPicrossText = rowPicrossTexts[0];
+		timerMultiplier = 0;
 
-		var solverExecutor = Executors.newSingleThreadExecutor();
-		solverExecutor.submit(() -> solverResult = Optional.of(picrossSolver.solvable()));
-
-		solutionDisplaySteps = picrossSolver.getSolutionSteps();
+		solverTask = SolverTask.submit(picrossSolver::solvable);
     }
 
 	public void setUIUpdateOnComplete(Runnable onComplete) {
@@ -62,64 +75,96 @@ public class PicrossViewer extends PicrossGrid {
 		runnableAddSkipAnimationButton = skipAnimation;
 	}
 
+	// told how many lines the solver has solved so far, every few thousand of them
+	public void setUIUpdateOnProgress(LongConsumer onProgress) {
+		runnableOnProgress = onProgress;
+	}
+
+	public void setLinesPerSecond(double linesPerSecond) {
+		this.linesPerSecond = linesPerSecond;
+	}
+
+	// the skip button goes up straight away, since the solver may be waiting on the playback to finish
 	protected void timerEvent(long lastUpdate, long time) {
-		SolutionDisplayStep displayStep = solutionDisplaySteps.poll();
-
-		if (solverResult.isPresent()) { 
-			if (!addedButton) {
-				Platform.runLater(runnableAddSkipAnimationButton);
-				addedButton = true;
-			} else if (displayStep == null) {
-				currentPicrossText.removeFocused();
-				timer.stop();
-				addedButton = false;
-				Platform.runLater(runnableOnComplete);
-				return;
-			}
+		if (!addedButton) {
+			Platform.runLater(runnableAddSkipAnimationButton);
+			addedButton = true;
+		} else if (solverTask.getResult().isPresent() && solutionDisplaySteps.isEmpty()) {
+			currentPicrossText.removeFocused();
+			timer.stop();
+			addedButton = false;
+			skipping = false;
+			Platform.runLater(runnableOnComplete);
+			return;
+		}
+
+		if (lineSolves != lineSolvesShown) {
+			lineSolvesShown = lineSolves;
+			runnableOnProgress.accept(lineSolvesShown);
 		}
 
-		if (displayStep == null) {
+		if (solutionDisplaySteps.isEmpty()) {
+			// so that waiting on the solver does not build up a burst of lines to play once it catches up
+			linesDue = Math.min(linesDue, 1.0);
 			return;
 		}
-		
-		currentPicrossText.removeFocused();
-		currentPicrossText = (PicrossText) (displayStep.focusColNums ? colPicrossTexts[displayStep.col] : rowPicrossTexts[displayStep.row]);
-		currentPicrossText.setFocused();
+		double secondsSinceLastFrame = lastUpdate == 0 ? 0 : (time - lastUpdate) / 1_000_000_000.0;
+		linesDue = Math.min(linesDue + secondsSinceLastFrame * linesPerSecond, Math.max(1.0, linesPerSecond));
+
+		long deadline = System.nanoTime() + FRAME_BUDGET_NANOS;
+		long lastStep = SolutionStepBuffer.NO_STEP;
+		while ((skipping || linesDue >= 1.0) && System.nanoTime() < deadline && !solutionDisplaySteps.isEmpty()) {
+			int group = SolutionStepBuffer.groupOf(solutionDisplaySteps.peek());
+			while (!solutionDisplaySteps.isEmpty() && SolutionStepBuffer.groupOf(solutionDisplaySteps.peek()) == group) {
+				lastStep = solutionDisplaySteps.poll();
+				updatePane(lastStep);
+			}
+			linesDue = Math.max(0.0, linesDue - 1.0);
+		}
 
-		updatePane(displayStep);
+		if (lastStep != SolutionStepBuffer.NO_STEP && !skipping) {
+			int row = SolutionStepBuffer.rowOf(lastStep);
+			int col = SolutionStepBuffer.colOf(lastStep);
+			currentPicrossText.removeFocused();
+			currentPicrossText = (PicrossText) (SolutionStepBuffer.focusesColNums(lastStep) ? colPicrossTexts[col] : rowPicrossTexts[row]);
+			currentPicrossText.setFocused();
+		}
 	}
 
+	// plays the rest of the steps a frame's budget at a time rather than all at once, so the window keeps responding
 	public void skipRemainingAnimation() {
-		timer.stop();
+		skipping = true;
 		currentPicrossText.removeFocused();
+	}
 
-		while (!solutionDisplaySteps.isEmpty()) {
-			updatePane(solutionDisplaySteps.poll());
-		}
-		
-		Platform.runLater(runnableOnComplete);
+	// for when the window closes, so the solver stops straight away instead of running on with nobody watching
+	public void stop() {
+		timer.stop();
+		solverTask.cancel();
+		solutionDisplaySteps.close();
 	}
 
-	private void updatePane(SolutionDisplayStep displayStep) {
-		if (displayStep.newState == PicrossSolver.FILLED_CELL) {
-			picrossPanes[displayStep.row][displayStep.col].setFilled();
-		} else if (displayStep.newState == PicrossSolver.CROSSED_CELL) {
-			picrossPanes[displayStep.row][displayStep.col].setCrossed();
+	private void updatePane(long displayStep) {
+		int row = SolutionStepBuffer.rowOf(displayStep);
+		int col = SolutionStepBuffer.colOf(displayStep);
+		int newState = SolutionStepBuffer.newStateOf(displayStep);
+		if (newState == PicrossSolver.FILLED_CELL) {
+			cells.setFilled(row, col);
+		} else if (newState == PicrossSolver.CROSSED_CELL) {
+			cells.setCrossed(row, col);
 		} else {
-			throw new RuntimeException("Invalid new state for " + displayStep.row + " " + displayStep.col);
+			throw new RuntimeException("Invalid new state for " + row + " " + col);
 		}
 	}
 
 	public Optional<Boolean> getSolverResult() {
-		return solverResult;
+		return solverTask.getResult();
 	}
 
 	public void tryGuessAndCheck() {
 		triedGuessing = true;
-		solverResult = Optional.empty();
 		addedButton = false;
-		var solverExecutor = Executors.newSingleThreadExecutor();
-		solverExecutor.submit(() -> solverResult = Optional.of(picrossSolver.solvableWithGuessAndCheck()));
+		solverTask = SolverTask.submit(picrossSolver::solvableWithGuessAndCheck);
 		timer.start();
 	}
 
@@ -148,27 +193,8 @@ public class PicrossViewer extends PicrossGrid {
 	}
 	
 	public void exportUnsolvedImage(Stage stage) {
-		LinkedList<PicrossPane> panesToRefill = new LinkedList<>();
-		LinkedList<PicrossPane> panesToRecross = new LinkedList<>();
-		for (PicrossPane[] paneRow : picrossPanes) {
-			for (PicrossPane pane : paneRow) {
-				if (pane.filled()) {
-					pane.clear();
-					panesToRefill.add(pane);
-				} else {
-					pane.uncross();
-					panesToRecross.add(pane);
-				}
-			}
-		}
-			
+		cells.setShowingMarks(false);
 		exportImage(stage);
-		
-		for (PicrossPane pane : panesToRefill) {
-			pane.setFilled();
-		}
-		for (PicrossPane pane : panesToRecross) {
-			pane.recross();
-		}
+		cells.setShowingMarks(true);
 	}
 }
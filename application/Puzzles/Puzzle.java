@@ -0,0 +1,55 @@
+package Puzzles;
+
+import Solver.PicrossClues;
+
+// A finished drawing together with the clues read off it
+public class Puzzle {
+    private final String name;
+    private final int[][] solution;
+    private final int[][] rowClues;
+    private final int[][] colClues;
+
+    public Puzzle(String name, int[][] solution) {
+        this.name = name;
+        this.solution = solution;
+        rowClues = PicrossClues.rowClues(solution);
+        colClues = PicrossClues.colClues(solution);
+    }
+
+    // for clues that were already worked out, such as those stored in a PuzzleLibrary
+    public Puzzle(String name, int[][] solution, int[][] rowClues, int[][] colClues) {
+        this.name = name;
+        this.solution = solution;
+        this.rowClues = rowClues;
+        this.colClues = colClues;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int[][] getSolution() {
+        return solution;
+    }
+
+    public int[][] getRowClues() {
+        return rowClues;
+    }
+
+    public int[][] getColClues() {
+        return colClues;
+    }
+
+    public int getRowCount() {
+        return rowClues.length;
+    }
+
+    public int getColCount() {
+        return colClues.length;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + getRowCount() + "x" + getColCount() + ")";
+    }
+}
@@ -0,0 +1,235 @@
+package Puzzles;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import Solver.PicrossSolver;
+
+// Reads the files PicrossEditor.saveWork writes: a header of "rows,cols" padded with x's, then one line of 0s and 1s
+// per row. The file is read once, a byte at a time, and the clues are counted while the cells are read. Spaces around
+// cells and \r\n line endings are allowed, and errors give the line and the column of the cell at fault.
+public class PuzzleCsvReader {
+    private final static int BUFFER_SIZE = 1 << 16;
+    private final static int END_OF_FILE = -1;
+    private final InputStream input;
+    private final String name;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private int lineNumber = 1;
+
+    private PuzzleCsvReader(InputStream input, String name) {
+        this.input = input;
+        this.name = name;
+    }
+
+    public static Puzzle read(Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            return read(input, file.getFileName().toString());
+        }
+    }
+
+    // the name is used for the puzzle and in error messages
+    public static Puzzle read(InputStream input, String name) throws IOException {
+        return new PuzzleCsvReader(input, name).readPuzzle();
+    }
+
+    // just the row and column counts from the header, as {rows, cols}, without reading any further
+    public static int[] readSize(InputStream input, String name) throws IOException {
+        return new PuzzleCsvReader(input, name).readHeader();
+    }
+
+    private int[] readHeader() throws IOException {
+        skipByteOrderMark();
+        if (peek() == END_OF_FILE) {
+            throw new IOException(name + " is empty");
+        }
+        int rowCount = readCount("row");
+        skipSpaces();
+        if (next() != ',') {
+            throw new IOException(name + " line 1: expected the row and column counts");
+        }
+        int colCount = readCount("column");
+        return new int[] {rowCount, colCount};
+    }
+
+    private Puzzle readPuzzle() throws IOException {
+        int[] size = readHeader();
+        int rowCount = size[0];
+        int colCount = size[1];
+        skipLine();
+
+        // each row is allocated once it is there to read, so a header much larger than the file runs out of rows
+        // instead of memory
+        int[][] solution = new int[rowCount][];
+        int[][] rowClues = new int[rowCount][];
+        int[] rowClue = new int[(colCount + 1) / 2];
+        int[] colRuns = new int[colCount];
+        int[][] colClues = new int[colCount][4];
+        int[] colClueCounts = new int[colCount];
+
+        int row = 0;
+        while (row < rowCount) {
+            lineNumber = row + 2;
+            if (peek() == END_OF_FILE) {
+                throw new IOException(name + ": expected " + rowCount + " rows but found " + row);
+            }
+            solution[row] = new int[colCount];
+            int rowRun = 0;
+            int rowClueCount = 0;
+            int col = 0;
+            while (col < colCount) {
+                skipSpaces();
+                int cell = next();
+                if (cell == END_OF_FILE || cell == '\n' || cell == '\r') {
+                    throw new IOException(name + " line " + lineNumber + ": expected " + colCount + " cells but found " + col);
+                } else if (cell == '1' && isEndOfCell(peekAfterSpaces())) {
+                    solution[row][col] = PicrossSolver.FILLED_CELL;
+                    rowRun++;
+                    colRuns[col]++;
+                } else if (cell == '0' && isEndOfCell(peekAfterSpaces())) {
+                    solution[row][col] = PicrossSolver.CROSSED_CELL;
+                    if (rowRun > 0) {
+                        rowClue[rowClueCount++] = rowRun;
+                        rowRun = 0;
+                    }
+                    if (colRuns[col] > 0) {
+                        addColClue(colClues, colClueCounts, col, colRuns[col]);
+                        colRuns[col] = 0;
+                    }
+                } else {
+                    throw new IOException(name + " line " + lineNumber + " column " + (col + 1) + ": invalid data " + (char) cell + readRestOfCell());
+                }
+
+                skipSpaces();
+                int separator = peek();
+                if (col < colCount - 1 && separator != ',') {
+                    throw new IOException(name + " line " + lineNumber + ": expected " + colCount + " cells but found " + (col + 1));
+                } else if (col == colCount - 1 && separator == ',') {
+                    throw new IOException(name + " line " + lineNumber + ": expected " + colCount + " cells but found " + (colCount + countRestOfLine()));
+                }
+                if (separator == ',') {
+                    position++;
+                }
+                col++;
+            }
+            if (rowRun > 0 || rowClueCount == 0) {
+                rowClue[rowClueCount++] = rowRun;
+            }
+            rowClues[row] = Arrays.copyOf(rowClue, rowClueCount);
+            skipLine();
+            row++;
+        }
+
+        int col = 0;
+        while (col < colCount) {
+            if (colRuns[col] > 0 || colClueCounts[col] == 0) {
+                addColClue(colClues, colClueCounts, col, colRuns[col]);
+            }
+            colClues[col] = Arrays.copyOf(colClues[col], colClueCounts[col]);
+            col++;
+        }
+        return new Puzzle(name, solution, rowClues, colClues);
+    }
+
+    private static void addColClue(int[][] colClues, int[] colClueCounts, int col, int run) {
+        if (colClueCounts[col] == colClues[col].length) {
+            colClues[col] = Arrays.copyOf(colClues[col], 2 * colClues[col].length);
+        }
+        colClues[col][colClueCounts[col]++] = run;
+    }
+
+    private int readCount(String what) throws IOException {
+        skipSpaces();
+        long count = 0;
+        int digits = 0;
+        while (peek() >= '0' && peek() <= '9') {
+            count = Math.min(10 * count + next() - '0', Integer.MAX_VALUE);
+            digits++;
+        }
+        if (digits == 0) {
+            throw new IOException(name + " line 1: the " + what + " count is not a number: " + readRestOfCell().trim());
+        }
+        if (count == 0 || count > PuzzleLibrary.MAX_LINE_LENGTH) {
+            throw new IOException(name + " line 1: the " + what + " count must be from 1 to " + PuzzleLibrary.MAX_LINE_LENGTH + " but is " + count);
+        }
+        return (int) count;
+    }
+
+    private static boolean isEndOfCell(int character) {
+        return character == ',' || character == '\n' || character == '\r' || character == END_OF_FILE;
+    }
+
+    // for error messages, the rest of the cell up to the next comma or line end
+    private String readRestOfCell() throws IOException {
+        StringBuilder rest = new StringBuilder();
+        while (!isEndOfCell(peek()) && rest.length() < 32) {
+            rest.append((char) next());
+        }
+        return rest.toString();
+    }
+
+    // for error messages, the cells left on the line after the current one
+    private int countRestOfLine() throws IOException {
+        int cells = 0;
+        while (peek() != '\n' && peek() != '\r' && peek() != END_OF_FILE) {
+            if (next() == ',') {
+                cells++;
+            }
+        }
+        return cells;
+    }
+
+    private void skipByteOrderMark() throws IOException {
+        if (peek() == 0xEF && limit - position >= 3 && buffer[position + 1] == (byte) 0xBB && buffer[position + 2] == (byte) 0xBF) {
+            position += 3;
+        }
+    }
+
+    private void skipSpaces() throws IOException {
+        while (peek() == ' ' || peek() == '\t') {
+            position++;
+        }
+    }
+
+    private int peekAfterSpaces() throws IOException {
+        skipSpaces();
+        return peek();
+    }
+
+    // skips past the end of the current line, whether it ends in \n or \r\n
+    private void skipLine() throws IOException {
+        int character = next();
+        while (character != '\n' && character != END_OF_FILE) {
+            character = next();
+        }
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return END_OF_FILE;
+        }
+        return buffer[position] & 0xFF;
+    }
+
+    private int next() throws IOException {
+        int character = peek();
+        if (character != END_OF_FILE) {
+            position++;
+        }
+        return character;
+    }
+
+    private boolean fill() throws IOException {
+        int read = input.read(buffer, 0, buffer.length);
+        while (read == 0) {
+            read = input.read(buffer, 0, buffer.length);
+        }
+        position = 0;
+        limit = Math.max(read, 0);
+        return read > 0;
+    }
+}
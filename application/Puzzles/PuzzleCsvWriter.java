@@ -0,0 +1,36 @@
+package Puzzles;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import Solver.PicrossSolver;
+
+// Writes a drawing the same way PicrossEditor.saveWork does, so the editor and PuzzleCsvReader can both open it
+public class PuzzleCsvWriter {
+    private PuzzleCsvWriter() {}
+
+    public static void write(Path file, int[][] solution) throws IOException {
+        int rowCount = solution.length;
+        int colCount = rowCount == 0 ? 0 : solution[0].length;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(rowCount + "," + colCount + (",x").repeat(Math.max(0, colCount - 2)) + "\n");
+
+            StringBuilder line = new StringBuilder(2 * colCount);
+            for (int[] row : solution) {
+                line.setLength(0);
+                int col = 0;
+                while (col < colCount) {
+                    if (col > 0) {
+                        line.append(',');
+                    }
+                    line.append(row[col] == PicrossSolver.FILLED_CELL ? PicrossSolver.FILLED_CELL : PicrossSolver.CROSSED_CELL);
+                    col++;
+                }
+                writer.write(line.append('\n').toString());
+            }
+        }
+    }
+}
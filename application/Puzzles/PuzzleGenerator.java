@@ -0,0 +1,53 @@
+package Puzzles;
+
+import java.util.SplittableRandom;
+
+import Solver.PicrossSolver;
+
+// Makes random drawings where each cell is filled with the given chance. A puzzle depends only on the seed, its size,
+// its fill percent and its index, so any one puzzle of a corpus can be made again without making the others.
+public class PuzzleGenerator {
+    private final long seed;
+
+    public PuzzleGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public Puzzle generate(int rowCount, int colCount, int fillPercent, int index) {
+        if (rowCount <= 0 || colCount <= 0) {
+            throw new IllegalArgumentException("Puzzle size must be positive but is " + rowCount + "x" + colCount);
+        }
+        if (fillPercent < 0 || fillPercent > 100) {
+            throw new IllegalArgumentException("Fill percent must be from 0 to 100 but is " + fillPercent);
+        }
+
+        SplittableRandom random = new SplittableRandom(puzzleSeed(rowCount, colCount, fillPercent, index));
+        int[][] solution = new int[rowCount][colCount];
+        int row = 0;
+        while (row < rowCount) {
+            int col = 0;
+            while (col < colCount) {
+                solution[row][col] = random.nextInt(100) < fillPercent ? PicrossSolver.FILLED_CELL : PicrossSolver.CROSSED_CELL;
+                col++;
+            }
+            row++;
+        }
+        return new Puzzle(nameFor(rowCount, colCount, fillPercent, index), solution);
+    }
+
+    public static String nameFor(int rowCount, int colCount, int fillPercent, int index) {
+        return rowCount + "x" + colCount + "-fill" + fillPercent + "-" + index;
+    }
+
+    private long puzzleSeed(int rowCount, int colCount, int fillPercent, int index) {
+        long puzzleSeed = seed;
+        for (int value : new int[] {rowCount, colCount, fillPercent, index}) {
+            puzzleSeed = puzzleSeed * 1_000_003 + value;
+        }
+        return puzzleSeed;
+    }
+}
@@ -0,0 +1,235 @@
+package Puzzles;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import Solver.PicrossSolver;
+
+// A file of many puzzles, each stored as its bit packed solution together with its row and column clues. The file is
+// memory mapped when opened and only the index is read, so any one puzzle can be read without parsing the others.
+//
+// Layout, with every number big endian:
+//   header  magic "PCRL" (int), version (short), reserved (short), puzzle count (int), index offset (long)
+//   records one per puzzle, back to back
+//   index   the offset of each record (long)
+// A record is the name length (short) and UTF-8 name, the row and column counts (int each), the solution one bit per
+// cell row by row with the first cell in the highest bit, padded to a whole byte, then for every row and then every
+// column its clue count (short) followed by its clues (short each).
+public class PuzzleLibrary {
+    public final static String FILE_EXTENSION = ".picl";
+    protected final static int MAGIC = 0x5043524C;
+    protected final static short VERSION = 1;
+    protected final static int HEADER_SIZE = 20;
+    // clues and clue counts are stored as unsigned shorts
+    protected final static int MAX_LINE_LENGTH = 0xFFFF;
+    private final String fileName;
+    private final ByteBuffer buffer;
+    private final long[] recordOffsets;
+
+    private PuzzleLibrary(String fileName, ByteBuffer buffer, long[] recordOffsets) {
+        this.fileName = fileName;
+        this.buffer = buffer;
+        this.recordOffsets = recordOffsets;
+    }
+
+    public static PuzzleLibrary open(Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(fileName + " is too large to map at " + channel.size() + " bytes");
+            }
+            return fromBuffer(fileName, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // for a library already in memory, such as one sent over the network; the name is only used in error messages
+    public static PuzzleLibrary fromBuffer(String fileName, ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE) {
+            throw new IOException(fileName + " is not a puzzle library: it is too short for the header");
+        }
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException(fileName + " is not a puzzle library");
+        }
+        short version = buffer.getShort(4);
+        if (version != VERSION) {
+            throw new IOException(fileName + " is puzzle library version " + version + " but only version " + VERSION + " can be read");
+        }
+        int puzzleCount = buffer.getInt(8);
+        long indexOffset = buffer.getLong(12);
+        if (puzzleCount < 0 || indexOffset < HEADER_SIZE || indexOffset + 8L * puzzleCount > buffer.capacity()) {
+            throw new IOException(fileName + ": the index of " + puzzleCount + " puzzles at " + indexOffset + " does not fit in the file");
+        }
+
+        long[] recordOffsets = new long[puzzleCount];
+        int index = 0;
+        while (index < puzzleCount) {
+            recordOffsets[index] = buffer.getLong((int) indexOffset + 8 * index);
+            if (recordOffsets[index] < HEADER_SIZE || recordOffsets[index] >= indexOffset) {
+                throw new IOException(fileName + ": puzzle " + index + " is at " + recordOffsets[index] + ", outside the records");
+            }
+            index++;
+        }
+        return new PuzzleLibrary(fileName, buffer, recordOffsets);
+    }
+
+    public int size() {
+        return recordOffsets.length;
+    }
+
+    public String getName(int index) throws IOException {
+        ByteBuffer record = recordAt(index);
+        try {
+            return readName(record);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException(fileName + ": puzzle " + index + " is cut short", e);
+        }
+    }
+
+    // the row and column counts, read without reading the rest of the puzzle
+    public int getRowCount(int index) throws IOException {
+        return readSize(index)[0];
+    }
+
+    public int getColCount(int index) throws IOException {
+        return readSize(index)[1];
+    }
+
+    private int[] readSize(int index) throws IOException {
+        ByteBuffer record = recordAt(index);
+        try {
+            readName(record);
+            return new int[] {record.getInt(), record.getInt()};
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException(fileName + ": puzzle " + index + " is cut short", e);
+        }
+    }
+
+    public Puzzle read(int index) throws IOException {
+        ByteBuffer record = recordAt(index);
+        try {
+            String name = readName(record);
+            int rowCount = record.getInt();
+            int colCount = record.getInt();
+            if (rowCount <= 0 || colCount <= 0 || rowCount > MAX_LINE_LENGTH || colCount > MAX_LINE_LENGTH) {
+                throw new IOException(fileName + ": puzzle " + index + " has an invalid size of " + rowCount + "x" + colCount);
+            }
+            // checked before the solution is allocated, which a corrupt size could otherwise make enormous
+            if (record.remaining() < ((long) rowCount * colCount + 7) / 8) {
+                throw new IOException(fileName + ": puzzle " + index + " is cut short");
+            }
+
+            int[][] solution = new int[rowCount][colCount];
+            int bits = 0;
+            int bitsLeft = 0;
+            int row = 0;
+            while (row < rowCount) {
+                int col = 0;
+                while (col < colCount) {
+                    if (bitsLeft == 0) {
+                        bits = record.get();
+                        bitsLeft = 8;
+                    }
+                    bitsLeft--;
+                    solution[row][col] = (bits >>> bitsLeft & 1) == 1 ? PicrossSolver.FILLED_CELL : PicrossSolver.CROSSED_CELL;
+                    col++;
+                }
+                row++;
+            }
+
+            int[][] rowClues = readClues(record, rowCount, colCount, index);
+            int[][] colClues = readClues(record, colCount, rowCount, index);
+            return new Puzzle(name, solution, rowClues, colClues);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException(fileName + ": puzzle " + index + " is cut short", e);
+        }
+    }
+
+    public List<Puzzle> readAll() throws IOException {
+        ArrayList<Puzzle> puzzles = new ArrayList<>(size());
+        int index = 0;
+        while (index < size()) {
+            puzzles.add(read(index));
+            index++;
+        }
+        return puzzles;
+    }
+
+    // a view of the record starting at its offset, so that reads on different threads do not share a position
+    private ByteBuffer recordAt(int index) {
+        if (index < 0 || index >= recordOffsets.length) {
+            throw new IndexOutOfBoundsException("Puzzle " + index + " of a library of " + recordOffsets.length);
+        }
+        return buffer.duplicate().position((int) recordOffsets[index]);
+    }
+
+    private static String readName(ByteBuffer record) {
+        byte[] name = new byte[Short.toUnsignedInt(record.getShort())];
+        record.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    private int[][] readClues(ByteBuffer record, int lineCount, int lineLength, int index) throws IOException {
+        int[][] clues = new int[lineCount][];
+        int line = 0;
+        while (line < lineCount) {
+            int clueCount = Short.toUnsignedInt(record.getShort());
+            if (clueCount == 0 || clueCount > (lineLength + 1) / 2) {
+                throw new IOException(fileName + ": puzzle " + index + " has " + clueCount + " clues for a line of " + lineLength);
+            }
+            clues[line] = new int[clueCount];
+            int clue = 0;
+            while (clue < clueCount) {
+                clues[line][clue] = Short.toUnsignedInt(record.getShort());
+                clue++;
+            }
+            line++;
+        }
+        return clues;
+    }
+
+    // packs the puzzles of the given CSV files into a new library, leaving out any file that cannot be read, and returns
+    // why each of those was left out
+    public static List<String> fromCsv(List<Path> csvFiles, Path library) throws IOException {
+        ArrayList<String> skipped = new ArrayList<>();
+        try (PuzzleLibraryWriter writer = PuzzleLibraryWriter.create(library)) {
+            for (Path csvFile : csvFiles) {
+                Puzzle puzzle;
+                try {
+                    puzzle = PuzzleCsvReader.read(csvFile);
+                } catch (IOException | RuntimeException e) {
+                    skipped.add(csvFile + ": " + e.getMessage());
+                    continue;
+                }
+                writer.add(puzzle);
+            }
+        }
+        return skipped;
+    }
+
+    // writes every puzzle as a CSV named after it and returns the files written
+    public List<Path> toCsv(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        ArrayList<Path> files = new ArrayList<>(size());
+        int index = 0;
+        while (index < size()) {
+            Puzzle puzzle = read(index);
+            String name = puzzle.getName().toLowerCase().endsWith(".csv") ? puzzle.getName() : puzzle.getName() + ".csv";
+            Path file = directory.resolve(name).normalize();
+            if (!directory.normalize().equals(file.getParent())) {
+                throw new IOException(fileName + ": puzzle " + index + " has a name that is not a plain file name: " + puzzle.getName());
+            }
+            PuzzleCsvWriter.write(file, puzzle.getSolution());
+            files.add(file);
+            index++;
+        }
+        return files;
+    }
+}
@@ -0,0 +1,130 @@
+package Puzzles;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import Solver.PicrossSolver;
+
+// Writes a PuzzleLibrary one puzzle at a time. The index and header are only written on close, so a library that was
+// never closed cannot be opened.
+public class PuzzleLibraryWriter implements Closeable {
+    private final FileChannel channel;
+    private long[] recordOffsets = new long[16];
+    private int puzzleCount = 0;
+
+    private PuzzleLibraryWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    public static PuzzleLibraryWriter create(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        channel.position(PuzzleLibrary.HEADER_SIZE);
+        return new PuzzleLibraryWriter(channel);
+    }
+
+    public void add(Puzzle puzzle) throws IOException {
+        int rowCount = puzzle.getRowCount();
+        int colCount = puzzle.getColCount();
+        if (rowCount > PuzzleLibrary.MAX_LINE_LENGTH || colCount > PuzzleLibrary.MAX_LINE_LENGTH) {
+            throw new IOException(puzzle.getName() + " is too large for a puzzle library at " + rowCount + "x" + colCount);
+        }
+        byte[] name = puzzle.getName().getBytes(StandardCharsets.UTF_8);
+        if (name.length > 0xFFFF) {
+            throw new IOException("The name of puzzle " + puzzleCount + " is too long for a puzzle library");
+        }
+
+        long size = 2 + name.length + 8 + ((long) rowCount * colCount + 7) / 8 + clueBytes(puzzle.getRowClues()) + clueBytes(puzzle.getColClues());
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(puzzle.getName() + " is too large for a puzzle library");
+        }
+        ByteBuffer record = ByteBuffer.allocate((int) size);
+        record.putShort((short) name.length);
+        record.put(name);
+        record.putInt(rowCount);
+        record.putInt(colCount);
+
+        int bits = 0;
+        int bitCount = 0;
+        for (int[] row : puzzle.getSolution()) {
+            for (int cell : row) {
+                bits = bits << 1 | (cell == PicrossSolver.FILLED_CELL ? 1 : 0);
+                bitCount++;
+                if (bitCount == 8) {
+                    record.put((byte) bits);
+                    bits = 0;
+                    bitCount = 0;
+                }
+            }
+        }
+        if (bitCount > 0) {
+            record.put((byte) (bits << (8 - bitCount)));
+        }
+        putClues(record, puzzle.getRowClues());
+        putClues(record, puzzle.getColClues());
+
+        if (puzzleCount == recordOffsets.length) {
+            recordOffsets = Arrays.copyOf(recordOffsets, 2 * recordOffsets.length);
+        }
+        recordOffsets[puzzleCount] = channel.position();
+        writeFully(record.flip());
+        puzzleCount++;
+    }
+
+    public int getPuzzleCount() {
+        return puzzleCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            long indexOffset = channel.position();
+            ByteBuffer index = ByteBuffer.allocate(8 * puzzleCount);
+            int puzzle = 0;
+            while (puzzle < puzzleCount) {
+                index.putLong(recordOffsets[puzzle]);
+                puzzle++;
+            }
+            writeFully(index.flip());
+
+            ByteBuffer header = ByteBuffer.allocate(PuzzleLibrary.HEADER_SIZE);
+            header.putInt(PuzzleLibrary.MAGIC);
+            header.putShort(PuzzleLibrary.VERSION);
+            header.putShort((short) 0);
+            header.putInt(puzzleCount);
+            header.putLong(indexOffset);
+            channel.position(0);
+            writeFully(header.flip());
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static long clueBytes(int[][] clues) {
+        long bytes = 0;
+        for (int[] lineClues : clues) {
+            bytes += 2 + 2L * lineClues.length;
+        }
+        return bytes;
+    }
+
+    private static void putClues(ByteBuffer record, int[][] clues) {
+        for (int[] lineClues : clues) {
+            record.putShort((short) lineClues.length);
+            for (int clue : lineClues) {
+                record.putShort((short) clue);
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package Solver;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+// One form for a puzzle's clues shared by all eight of its mirror images, rotations and transposes, which all solve the
+// same way, along with a 128 bit hash of it. Of the eight ways to lay the clues out, the canonical one is whichever
+// encodes smallest: the row and column counts, then every row's clue count and clues, then every column's. An empty
+// line encodes the same whether its clue is {} or {0}.
+//
+// Two CanonicalClues are equal only when their encodings are, so a hash collision cannot make different puzzles equal.
+public class CanonicalClues {
+    private final int[] encoding;
+    private final long hashHigh;
+    private final long hashLow;
+
+    private CanonicalClues(int[] encoding) {
+        this.encoding = encoding;
+        ByteBuffer bytes = ByteBuffer.allocate(4 * encoding.length);
+        bytes.asIntBuffer().put(encoding);
+        ByteBuffer digest;
+        try {
+            digest = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(bytes.array()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Every Java runtime has SHA-256", e);
+        }
+        hashHigh = digest.getLong();
+        hashLow = digest.getLong();
+    }
+
+    public static CanonicalClues of(int[][] rowClues, int[][] colClues) {
+        int[] smallest = null;
+        int symmetry = 0;
+        while (symmetry < 8) {
+            boolean mirrored = (symmetry & 1) != 0;
+            boolean flipped = (symmetry & 2) != 0;
+            // mirroring reverses each row and the order of the columns, and flipping the other way round
+            int[] encoding = (symmetry & 4) == 0 ? encode(rowClues, flipped, mirrored, colClues, mirrored, flipped)
+                                                 : encode(colClues, mirrored, flipped, rowClues, flipped, mirrored);
+            if (smallest == null || Arrays.compare(encoding, smallest) < 0) {
+                smallest = encoding;
+            }
+            symmetry++;
+        }
+        return new CanonicalClues(smallest);
+    }
+
+    private static int[] encode(int[][] rows, boolean reverseRows, boolean reverseEachRow, int[][] cols, boolean reverseCols, boolean reverseEachCol) {
+        int length = 2;
+        for (int[][] lines : new int[][][] {rows, cols}) {
+            for (int[] line : lines) {
+                length += 1 + clueCount(line);
+            }
+        }
+        int[] encoding = new int[length];
+        encoding[0] = rows.length;
+        encoding[1] = cols.length;
+        int position = encodeLines(encoding, 2, rows, reverseRows, reverseEachRow);
+        encodeLines(encoding, position, cols, reverseCols, reverseEachCol);
+        return encoding;
+    }
+
+    private static int encodeLines(int[] encoding, int position, int[][] lines, boolean reverseLines, boolean reverseEachLine) {
+        int index = 0;
+        while (index < lines.length) {
+            int[] line = lines[reverseLines ? lines.length - 1 - index : index];
+            int clueCount = clueCount(line);
+            encoding[position++] = clueCount;
+            int clue = 0;
+            while (clue < clueCount) {
+                encoding[position++] = line[reverseEachLine ? clueCount - 1 - clue : clue];
+                clue++;
+            }
+            index++;
+        }
+        return position;
+    }
+
+    private static int clueCount(int[] line) {
+        return line.length == 1 && line[0] == 0 ? 0 : line.length;
+    }
+
+    // the row and column counts the way round the canonical form has them, which is not necessarily the puzzle's
+    public int getRowCount() {
+        return encoding[0];
+    }
+
+    public int getColCount() {
+        return encoding[1];
+    }
+
+    public long getHashHigh() {
+        return hashHigh;
+    }
+
+    public long getHashLow() {
+        return hashLow;
+    }
+
+    // the hash as 32 hex digits
+    public String getHash() {
+        return String.format("%016x%016x", hashHigh, hashLow);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof CanonicalClues clues && hashHigh == clues.hashHigh && hashLow == clues.hashLow && Arrays.equals(encoding, clues.encoding);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) hashLow;
+    }
+
+    @Override
+    public String toString() {
+        return getHash() + " (" + getRowCount() + "x" + getColCount() + ")";
+    }
+}
@@ -0,0 +1,34 @@
+package Solver;
+
+import java.util.BitSet;
+
+// Probes the first and last undecided cell of every line, which is where the line's outermost undecided clue starts or
+// ends, and follows each try through the row and column of the cell and the lines those change. Only about two cells
+// a line are tried, so it is the cheapest rule and goes first.
+class ClueEdgeRule extends LocalProbeRule {
+    protected ClueEdgeRule() {
+        super("ClueEdge", 1, ProbeScope.UNLIMITED, ProbeScope.UNLIMITED);
+    }
+
+    @Override
+    protected BitSet candidates(PackedGrid grid, int numRows, int numCols) {
+        BitSet candidates = new BitSet(numRows * numCols);
+        int line = 0;
+        while (line < grid.lineCount()) {
+            int first = 0;
+            while (first < grid.lineLength(line) && grid.get(grid.rowOf(line, first), grid.colOf(line, first)) != PicrossSolver.EMPTY_CELL) {
+                first++;
+            }
+            int last = grid.lineLength(line) - 1;
+            while (last > first && grid.get(grid.rowOf(line, last), grid.colOf(line, last)) != PicrossSolver.EMPTY_CELL) {
+                last--;
+            }
+            if (first < grid.lineLength(line)) {
+                candidates.set(grid.rowOf(line, first) * numCols + grid.colOf(line, first));
+                candidates.set(grid.rowOf(line, last) * numCols + grid.colOf(line, last));
+            }
+            line++;
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,90 @@
+package Solver;
+
+import java.util.Optional;
+
+// Keeps one solver alive across changes to the clues, for checking a puzzle while it is being drawn. When a clue
+// changes, only the deductions that could have depended on it are taken back, and checking again solves just the lines
+// those touched rather than the whole puzzle from the start. Only line solving is used, so a puzzle that needs guessing
+// is reported as such rather than guessed at.
+//
+// It is not thread safe, but it may be used from one thread after another, such as by one SolverTask at a time.
+public class IncrementalSolver {
+    public static enum Status { SOLVABLE, NEEDS_GUESSING, CONTRADICTION }
+    private final int[][] rowClues;
+    private final int[][] colClues;
+    private final PicrossSolver solver;
+    private final PackedGrid grid;
+    private final int cellCount;
+
+    public IncrementalSolver(int[][] rowClues, int[][] colClues) {
+        this.rowClues = rowClues.clone();
+        this.colClues = colClues.clone();
+        solver = new PicrossSolver(this.rowClues, this.colClues, Optional.empty());
+        solver.stopRecordingSteps();
+        grid = solver.getGrid();
+        grid.startTrail();
+        cellCount = rowClues.length * colClues.length;
+    }
+
+    public void setLineSolutionCache(LineSolutionCache lineSolutionCache) {
+        solver.setLineSolutionCache(lineSolutionCache);
+    }
+
+    public void setRowClue(int row, int[] clue) {
+        rowClues[row] = clue;
+        solver.retractDeductionsOf(grid.rowLine(row));
+    }
+
+    public void setColClue(int col, int[] clue) {
+        colClues[col] = clue;
+        solver.retractDeductionsOf(grid.colLine(col));
+    }
+
+    public Result check() {
+        long startTime = System.nanoTime();
+        long lineSolvesBefore = solver.getLineSolveCount();
+        boolean consistent;
+        try {
+            consistent = solver.propagateAll();
+        } catch (SolverCancelledException e) {
+            solver.requeueAllLines();
+            throw e;
+        }
+
+        Status status = !consistent ? Status.CONTRADICTION : grid.isComplete() ? Status.SOLVABLE : Status.NEEDS_GUESSING;
+        int undecidedCount = consistent ? cellCount - grid.trailSize() : 0;
+        return new Result(status, undecidedCount, solver.getLineSolveCount() - lineSolvesBefore, (System.nanoTime() - startTime) / 1_000_000.0);
+    }
+
+    public static class Result {
+        private final Status status;
+        private final int undecidedCount;
+        private final long lineSolveCount;
+        private final double millis;
+
+        private Result(Status status, int undecidedCount, long lineSolveCount, double millis) {
+            this.status = status;
+            this.undecidedCount = undecidedCount;
+            this.lineSolveCount = lineSolveCount;
+            this.millis = millis;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        // the cells line solving could not decide
+        public int getUndecidedCount() {
+            return undecidedCount;
+        }
+
+        // only the line solves this check needed, not the ones before it
+        public long getLineSolveCount() {
+            return lineSolveCount;
+        }
+
+        public double getMillis() {
+            return millis;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package Solver;
+
+import java.util.BitSet;
+
+// Probes every undecided cell through the row and column that cross at it, and then once through each line either of
+// them changes. That is as far as reasoning about a row and column pair reaches, since anything the pair decides about
+// its own cells line solving already found.
+class LinePairRule extends LocalProbeRule {
+    protected LinePairRule() {
+        super("LinePair", 1, ProbeScope.UNLIMITED, ProbeScope.UNLIMITED);
+    }
+
+    @Override
+    protected BitSet candidates(PackedGrid grid, int numRows, int numCols) {
+        BitSet candidates = new BitSet(numRows * numCols);
+        candidates.set(0, numRows * numCols);
+        return candidates;
+    }
+}
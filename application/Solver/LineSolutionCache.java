@@ -0,0 +1,162 @@
+package Solver;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class LineSolutionCache {
+    public final static int DEFAULT_CAPACITY = 1 << 16;
+    private final static SolvedLine CONTRADICTION = new SolvedLine(new long[0], new long[0]);
+    private final int capacity;
+    private final LinkedHashMap<LineKey, SolvedLine> solvedLines;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public LineSolutionCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LineSolutionCache(int capacity) {
+        this.capacity = capacity;
+        solvedLines = new LinkedHashMap<LineKey, SolvedLine>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LineKey, SolvedLine> eldest) {
+                if (size() > LineSolutionCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // returned lines are shared between callers and must not be written to
+    protected SolvedLine tryToSolveLine(LineSolverEngine engine, PackedGrid grid, int line, int[] nums, SolverMetrics metrics) throws RuntimeException {
+        LineKey key = new LineKey(engine, grid, line, nums);
+        SolvedLine solvedLine = lookUp(key);
+        if (solvedLine == CONTRADICTION) {
+            throw new IllegalStateException("Line " + line + " is known to have no solution");
+        }
+        if (solvedLine != null) {
+            return solvedLine;
+        }
+
+        LineSolverScratch scratch = LineSolverScratch.forCurrentThread();
+        long distributionsBefore = scratch.distributionsTried;
+        try {
+            int[] cells = grid.readLine(line, scratch.lineOfLength(grid.lineLength(line)));
+            solvedLine = new SolvedLine(engine.tryToSolveLine(cells, nums));
+        } catch (RuntimeException e) {
+            store(key, CONTRADICTION);
+            throw e;
+        } finally {
+            metrics.countEngineLineSolve(scratch.distributionsTried - distributionsBefore);
+        }
+        store(key, solvedLine);
+        return solvedLine;
+    }
+
+    private synchronized SolvedLine lookUp(LineKey key) {
+        SolvedLine solvedLine = solvedLines.get(key);
+        if (solvedLine == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return solvedLine;
+    }
+
+    private synchronized void store(LineKey key, SolvedLine solvedLine) {
+        solvedLines.put(key, solvedLine);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return solvedLines.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized void clear() {
+        solvedLines.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LineSolutionCache[size=" + solvedLines.size() + "/" + capacity + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+
+    protected static class SolvedLine {
+        protected final long[] filled;
+        protected final long[] crossed;
+
+        private SolvedLine(long[] filled, long[] crossed) {
+            this.filled = filled;
+            this.crossed = crossed;
+        }
+
+        private SolvedLine(int[] newLine) {
+            filled = new long[PackedGrid.wordsFor(newLine.length)];
+            crossed = new long[PackedGrid.wordsFor(newLine.length)];
+            int index = 0;
+            while (index < newLine.length) {
+                if (newLine[index] == PicrossSolver.FILLED_CELL) {
+                    filled[index >>> 6] |= 1L << index;
+                } else if (newLine[index] == PicrossSolver.CROSSED_CELL) {
+                    crossed[index >>> 6] |= 1L << index;
+                }
+                index++;
+            }
+        }
+    }
+
+    // the key holds the line length followed by the filled words and then the crossed words of the line, and the engine
+    // too, since the engines do not always agree on a line and a cache can be shared by solvers using different ones
+    private static class LineKey {
+        private final LineSolverEngine engine;
+        private final long[] packedLine;
+        private final int[] nums;
+        private final int hash;
+
+        private LineKey(LineSolverEngine engine, PackedGrid grid, int line, int[] nums) {
+            this.engine = engine;
+            long[] knownFilled = grid.knownFilled(line);
+            long[] knownCrossed = grid.knownCrossed(line);
+            int wordCount = knownFilled.length;
+            packedLine = new long[2 * wordCount + 1];
+            packedLine[0] = grid.lineLength(line);
+            System.arraycopy(knownFilled, 0, packedLine, 1, wordCount);
+            System.arraycopy(knownCrossed, 0, packedLine, wordCount + 1, wordCount);
+            this.nums = nums;
+            hash = 31 * (31 * engine.ordinal() + Arrays.hashCode(packedLine)) + Arrays.hashCode(nums);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof LineKey)) {
+                return false;
+            }
+            LineKey otherKey = (LineKey) other;
+            return hash == otherKey.hash && engine == otherKey.engine && Arrays.equals(packedLine, otherKey.packedLine) && Arrays.equals(nums, otherKey.nums);
+        }
+    }
+}
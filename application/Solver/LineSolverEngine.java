@@ -0,0 +1,35 @@
+package Solver;
+
+public enum LineSolverEngine {
+    DISTRIBUTIONS,
+    EXTREMES;
+
+    // every engine reports a line with no solution as an IllegalStateException
+    int[] tryToSolveLine(int[] line, int[] nums) throws IllegalStateException {
+        int[] newLine;
+        try {
+            newLine = switch (this) {
+                case DISTRIBUTIONS -> PicrossLineSolver.tryToSolveLine(line, nums);
+                case EXTREMES ->      PicrossExtremesLineSolver.tryToSolveLine(line, nums);
+            };
+        } catch (RuntimeException e) {
+            if (SolverTrace.isEnabled(SolverTrace.Subsystem.LINE_SOLVER)) {
+                SolverTrace.event(SolverTrace.Subsystem.LINE_SOLVER, "solve", "engine", this, "line", line, "nums", nums, "contradiction", e.getMessage());
+            }
+            if (e instanceof IllegalStateException) {
+                throw e;
+            }
+            throw new IllegalStateException("No way to fill in line: " + e.getMessage(), e);
+        }
+
+        if (SolverTrace.isEnabled(SolverTrace.Subsystem.LINE_SOLVER)) {
+            SolverTrace.event(SolverTrace.Subsystem.LINE_SOLVER, "solve", "engine", this, "line", line, "nums", nums, "newLine", newLine);
+        }
+        return newLine;
+    }
+
+    // for callers outside the solver, such as benchmarks; newLine must be as long as line
+    public void solveLine(int[] line, int[] nums, int[] newLine) throws IllegalStateException {
+        System.arraycopy(tryToSolveLine(line, nums), 0, newLine, 0, line.length);
+    }
+}
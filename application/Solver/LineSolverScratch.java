@@ -0,0 +1,95 @@
+package Solver;
+
+import java.util.Arrays;
+
+// Working arrays for the line solvers, one set per thread. They only grow, so once a thread has solved its longest
+// line with its most nums, solving lines on it allocates nothing. Whatever is handed out here stays valid only until the
+// next line is solved on the same thread.
+class LineSolverScratch {
+    private final static ThreadLocal<LineSolverScratch> SCRATCH = ThreadLocal.withInitial(LineSolverScratch::new);
+    // lines are kept at their exact length so callers can still rely on line.length
+    private int[][] linesByLength = new int[0][];
+    private int[][] newLinesByLength = new int[0][];
+    private int lineCapacity = -1;
+    private int numsCapacity = -1;
+    private int tableCapacity = 0;
+    // only ever goes up, so callers count the distributions of a solve by what it went up by
+    protected long distributionsTried = 0;
+
+    // segments of uncrossed cells and the nums each one was last checked against
+    protected int[] segmentStarts;
+    protected int[] segmentLengths;
+    protected boolean[] segmentHasSomeFilled;
+    protected int[] segmentNumsFrom;
+    protected int[] segmentNumsCount;
+    protected int[] distribution;
+    // indexed by num, since the nums of the segments in a distribution never overlap
+    protected int[] positions;
+    protected int[] maxPositions;
+    protected int[] tryingPositions;
+    protected int[] flippedCells;
+    protected int[] flippedNums;
+    protected int[] flippedPositions;
+    protected boolean[] couldBeFilled;
+    protected boolean[] couldBeCrossed;
+
+    protected int[] crossedBefore;
+    protected int[] fillCoverage;
+    // (numsCount + 1) rows of (lineLength + 1) entries
+    protected boolean[] fitsFromLeft;
+    protected boolean[] fitsFromRight;
+
+    protected static LineSolverScratch forCurrentThread() {
+        return SCRATCH.get();
+    }
+
+    protected void ensureCapacity(int lineLength, int numsCount) {
+        if (lineLength > lineCapacity) {
+            lineCapacity = lineLength;
+            segmentStarts = new int[(lineLength + 1) / 2];
+            segmentLengths = new int[(lineLength + 1) / 2];
+            segmentHasSomeFilled = new boolean[(lineLength + 1) / 2];
+            segmentNumsFrom = new int[(lineLength + 1) / 2];
+            segmentNumsCount = new int[(lineLength + 1) / 2];
+            flippedCells = new int[lineLength];
+            couldBeFilled = new boolean[lineLength];
+            couldBeCrossed = new boolean[lineLength];
+            crossedBefore = new int[lineLength + 1];
+            fillCoverage = new int[lineLength + 1];
+        }
+        if (numsCount > numsCapacity) {
+            numsCapacity = numsCount;
+            distribution = new int[numsCount];
+            positions = new int[numsCount];
+            maxPositions = new int[numsCount];
+            tryingPositions = new int[numsCount];
+            flippedNums = new int[numsCount];
+            flippedPositions = new int[numsCount];
+        }
+        if ((numsCount + 1) * (lineLength + 1) > tableCapacity) {
+            tableCapacity = (numsCount + 1) * (lineLength + 1);
+            fitsFromLeft = new boolean[tableCapacity];
+            fitsFromRight = new boolean[tableCapacity];
+        }
+    }
+
+    protected int[] lineOfLength(int length) {
+        linesByLength = withLineOfLength(linesByLength, length);
+        return linesByLength[length];
+    }
+
+    protected int[] newLineOfLength(int length) {
+        newLinesByLength = withLineOfLength(newLinesByLength, length);
+        return newLinesByLength[length];
+    }
+
+    private static int[][] withLineOfLength(int[][] lines, int length) {
+        if (length >= lines.length) {
+            lines = Arrays.copyOf(lines, length + 1);
+        }
+        if (lines[length] == null) {
+            lines[length] = new int[length];
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,72 @@
+package Solver;
+
+import java.util.Arrays;
+
+// FIFO of lines waiting to be solved. A line already waiting is not added again until it has been taken off.
+class LineWorklist {
+    private final int[] lines;
+    private final boolean[] queued;
+    private int head = 0;
+    private int size = 0;
+
+    protected LineWorklist(int lineCount) {
+        lines = new int[lineCount];
+        queued = new boolean[lineCount];
+    }
+
+    protected void add(int line) {
+        if (queued[line]) {
+            return;
+        }
+        queued[line] = true;
+        lines[(head + size) % lines.length] = line;
+        size++;
+    }
+
+    protected void addAll() {
+        int line = 0;
+        while (line < lines.length) {
+            add(line);
+            line++;
+        }
+    }
+
+    protected int poll() {
+        int line = lines[head];
+        queued[line] = false;
+        head = (head + 1) % lines.length;
+        size--;
+        return line;
+    }
+
+    // takes every waiting line in [firstLine, endLine) off in order and leaves the others waiting in theirs
+    protected int[] pollRange(int firstLine, int endLine) {
+        int[] taken = new int[size];
+        int takenCount = 0;
+        int remaining = size;
+        while (remaining > 0) {
+            int line = poll();
+            if (line >= firstLine && line < endLine) {
+                taken[takenCount++] = line;
+            } else {
+                add(line);
+            }
+            remaining--;
+        }
+        return Arrays.copyOf(taken, takenCount);
+    }
+
+    protected boolean isEmpty() {
+        return size == 0;
+    }
+
+    protected int size() {
+        return size;
+    }
+
+    protected void clear() {
+        while (!isEmpty()) {
+            poll();
+        }
+    }
+}
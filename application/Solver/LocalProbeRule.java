@@ -0,0 +1,63 @@
+package Solver;
+
+import java.util.BitSet;
+
+// Tries candidate cells both ways with propagation kept within a ProbeScope. As in full probing, a value that leads to
+// a contradiction is ruled out, and when neither does, every cell both tries agree on is deduced. Both are sound however
+// little of the grid the probes reached, since a limited probe only knows less than a full one. Cells whose row and
+// column have not changed since the rule last ran are passed over.
+abstract class LocalProbeRule implements PropagationRule {
+    private final String name;
+    private final int maxDepth;
+    private final int radius;
+    private final int lineBudget;
+
+    protected LocalProbeRule(String name, int maxDepth, int radius, int lineBudget) {
+        this.name = name;
+        this.maxDepth = maxDepth;
+        this.radius = radius;
+        this.lineBudget = lineBudget;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    // as row * column count + column
+    protected abstract BitSet candidates(PackedGrid grid, int numRows, int numCols);
+
+    @Override
+    public int apply(PicrossSolver solver) throws IllegalStateException {
+        PackedGrid grid = solver.getGrid();
+        int numRows = solver.getRowHeaders().length;
+        int numCols = solver.getColHeaders().length;
+        BitSet candidates = candidates(grid, numRows, numCols);
+        int deducedCount = 0;
+        int cell = candidates.nextSetBit(0);
+        while (cell >= 0) {
+            int row = cell / numCols;
+            int col = cell % numCols;
+            if (grid.get(row, col) == PicrossSolver.EMPTY_CELL && solver.changedNear(row, col)) {
+                deducedCount += probe(solver, row, col);
+            }
+            cell = candidates.nextSetBit(cell + 1);
+        }
+        return deducedCount;
+    }
+
+    private int probe(PicrossSolver solver, int row, int col) {
+        PicrossSolver solverWithFill = solver.probeNear(row, col, PicrossSolver.FILLED_CELL, maxDepth, radius, lineBudget);
+        if (solverWithFill.isImpossible()) {
+            solver.deduce(row, col, PicrossSolver.CROSSED_CELL);
+            return 1;
+        }
+        PicrossSolver solverWithCross = solver.probeNear(row, col, PicrossSolver.CROSSED_CELL, maxDepth, radius, lineBudget);
+        if (solverWithCross.isImpossible()) {
+            solver.deduce(row, col, PicrossSolver.FILLED_CELL);
+            return 1;
+        }
+
+        return solver.deduceAgreed(solverWithFill, solverWithCross);
+    }
+}
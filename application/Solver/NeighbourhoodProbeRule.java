@@ -0,0 +1,22 @@
+package Solver;
+
+import java.util.BitSet;
+
+// Probes every undecided cell with propagation as deep as it goes, but only through the lines within a few rows and
+// columns of the cell and only up to a fixed number of line solves, so each probe costs about the same however large
+// the puzzle is.
+class NeighbourhoodProbeRule extends LocalProbeRule {
+    private final static int RADIUS = 3;
+    private final static int LINE_BUDGET = 64;
+
+    protected NeighbourhoodProbeRule() {
+        super("NeighbourhoodProbe", ProbeScope.UNLIMITED, RADIUS, LINE_BUDGET);
+    }
+
+    @Override
+    protected BitSet candidates(PackedGrid grid, int numRows, int numCols) {
+        BitSet candidates = new BitSet(numRows * numCols);
+        candidates.set(0, numRows * numCols);
+        return candidates;
+    }
+}
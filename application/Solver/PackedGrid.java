@@ -0,0 +1,238 @@
+package Solver;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Lines are numbered with rows first and then columns. Every line keeps one bitset of cells known to be filled
+// and one of cells known to be crossed, so both rows and columns can be read a word at a time without copying.
+class PackedGrid {
+    private final int numRows;
+    private final int numCols;
+    private final long[][] knownFilled;
+    private final long[][] knownCrossed;
+    protected final static int DECISION = -1;
+    private boolean trailing = false;
+    private int[] trailCells;
+    private int[] trailReasons;
+    private int[] trailPositions;
+    private int trailSize = 0;
+
+    protected PackedGrid(int numRows, int numCols) {
+        this.numRows = numRows;
+        this.numCols = numCols;
+        knownFilled = new long[numRows + numCols][];
+        knownCrossed = new long[numRows + numCols][];
+
+        int line = 0;
+        while (line < numRows + numCols) {
+            knownFilled[line] = new long[wordsFor(lineLength(line))];
+            knownCrossed[line] = new long[wordsFor(lineLength(line))];
+            line++;
+        }
+    }
+
+    protected PackedGrid(PackedGrid other) {
+        numRows = other.numRows;
+        numCols = other.numCols;
+        knownFilled = new long[numRows + numCols][];
+        knownCrossed = new long[numRows + numCols][];
+
+        int line = 0;
+        while (line < numRows + numCols) {
+            knownFilled[line] = other.knownFilled[line].clone();
+            knownCrossed[line] = other.knownCrossed[line].clone();
+            line++;
+        }
+    }
+
+    protected static int wordsFor(int length) {
+        return (length + 63) >>> 6;
+    }
+
+    protected int lineCount() {
+        return numRows + numCols;
+    }
+
+    protected boolean isColumn(int line) {
+        return line >= numRows;
+    }
+
+    protected int lineLength(int line) {
+        return isColumn(line) ? numRows : numCols;
+    }
+
+    protected int rowLine(int row) {
+        return row;
+    }
+
+    protected int colLine(int col) {
+        return numRows + col;
+    }
+
+    protected int rowOf(int line, int position) {
+        return isColumn(line) ? position : line;
+    }
+
+    protected int colOf(int line, int position) {
+        return isColumn(line) ? line - numRows : position;
+    }
+
+    // the returned words belong to the grid and must not be written to
+    protected long[] knownFilled(int line) {
+        return knownFilled[line];
+    }
+
+    protected long[] knownCrossed(int line) {
+        return knownCrossed[line];
+    }
+
+    protected int get(int row, int col) {
+        long bit = 1L << col;
+        if ((knownFilled[row][col >>> 6] & bit) != 0) {
+            return PicrossSolver.FILLED_CELL;
+        } else if ((knownCrossed[row][col >>> 6] & bit) != 0) {
+            return PicrossSolver.CROSSED_CELL;
+        }
+        return PicrossSolver.EMPTY_CELL;
+    }
+
+    protected void set(int row, int col, int value) {
+        set(row, col, value, DECISION);
+    }
+
+    // reasonLine is the line whose solve found the cell, or DECISION when the cell was assumed
+    protected void set(int row, int col, int value, int reasonLine) {
+        setBit(row, col, value);
+        setBit(numRows + col, row, value);
+
+        if (trailing && value != PicrossSolver.EMPTY_CELL) {
+            int cell = row * numCols + col;
+            trailCells[trailSize] = cell;
+            trailReasons[trailSize] = reasonLine;
+            trailPositions[cell] = trailSize;
+            trailSize++;
+        }
+    }
+
+    // from here on every cell that becomes known is remembered in order so it can be undone
+    protected void startTrail() {
+        trailing = true;
+        trailCells = new int[numRows * numCols];
+        trailReasons = new int[numRows * numCols];
+        trailPositions = new int[numRows * numCols];
+        Arrays.fill(trailPositions, -1);
+        trailSize = 0;
+    }
+
+    protected int trailSize() {
+        return trailSize;
+    }
+
+    protected int trailCell(int position) {
+        return trailCells[position];
+    }
+
+    protected int trailReason(int position) {
+        return trailReasons[position];
+    }
+
+    // -1 when the cell is unknown or was already known when the trail started
+    protected int trailPosition(int row, int col) {
+        return trailPositions[row * numCols + col];
+    }
+
+    protected void undoTo(int mark) {
+        while (trailSize > mark) {
+            trailSize--;
+            int cell = trailCells[trailSize];
+            trailPositions[cell] = -1;
+            setBit(cell / numCols, cell % numCols, PicrossSolver.EMPTY_CELL);
+            setBit(numRows + cell % numCols, cell / numCols, PicrossSolver.EMPTY_CELL);
+        }
+    }
+
+    // takes back the cells at the given trail positions, wherever they are, and keeps the rest in the order they came
+    protected void undo(BitSet positions) {
+        int kept = Math.max(positions.nextSetBit(0), 0);
+        int position = kept;
+        while (position < trailSize) {
+            int cell = trailCells[position];
+            if (positions.get(position)) {
+                trailPositions[cell] = -1;
+                setBit(cell / numCols, cell % numCols, PicrossSolver.EMPTY_CELL);
+                setBit(numRows + cell % numCols, cell / numCols, PicrossSolver.EMPTY_CELL);
+            } else {
+                trailCells[kept] = cell;
+                trailReasons[kept] = trailReasons[position];
+                trailPositions[cell] = kept;
+                kept++;
+            }
+            position++;
+        }
+        trailSize = kept;
+    }
+
+    private void setBit(int line, int position, int value) {
+        int word = position >>> 6;
+        long bit = 1L << position;
+        knownFilled[line][word] &= ~bit;
+        knownCrossed[line][word] &= ~bit;
+        if (value == PicrossSolver.FILLED_CELL) {
+            knownFilled[line][word] |= bit;
+        } else if (value == PicrossSolver.CROSSED_CELL) {
+            knownCrossed[line][word] |= bit;
+        }
+    }
+
+    protected int[] readLine(int line) {
+        return readLine(line, new int[lineLength(line)]);
+    }
+
+    // fills in cells, which must be exactly as long as the line
+    protected int[] readLine(int line, int[] cells) {
+        int position = 0;
+        while (position < cells.length) {
+            long bit = 1L << position;
+            if ((knownFilled[line][position >>> 6] & bit) != 0) {
+                cells[position] = PicrossSolver.FILLED_CELL;
+            } else if ((knownCrossed[line][position >>> 6] & bit) != 0) {
+                cells[position] = PicrossSolver.CROSSED_CELL;
+            } else {
+                cells[position] = PicrossSolver.EMPTY_CELL;
+            }
+            position++;
+        }
+        return cells;
+    }
+
+    protected int countUnknown(int line) {
+        int known = 0;
+        int word = 0;
+        while (word < knownFilled[line].length) {
+            known += Long.bitCount(knownFilled[line][word] | knownCrossed[line][word]);
+            word++;
+        }
+        return lineLength(line) - known;
+    }
+
+    protected boolean isComplete() {
+        int row = 0;
+        while (row < numRows) {
+            if (countUnknown(row) > 0) {
+                return false;
+            }
+            row++;
+        }
+        return true;
+    }
+
+    protected int[][] toIntGrid() {
+        int[][] intGrid = new int[numRows][];
+        int row = 0;
+        while (row < numRows) {
+            intGrid[row] = readLine(row);
+            row++;
+        }
+        return intGrid;
+    }
+}
@@ -0,0 +1,60 @@
+package Solver;
+
+import java.util.Arrays;
+
+// Clues read off a finished drawing the same way the editor labels its rows and columns. A line with no filled cells
+// gets the clue {0}.
+public class PicrossClues {
+    private PicrossClues() {}
+
+    public static int[][] rowClues(int[][] matrix) {
+        int[][] clues = new int[matrix.length][];
+        int row = 0;
+        while (row < matrix.length) {
+            clues[row] = lineClues(matrix[row]);
+            row++;
+        }
+        return clues;
+    }
+
+    public static int[][] colClues(int[][] matrix) {
+        int colCount = matrix.length == 0 ? 0 : matrix[0].length;
+        int[][] clues = new int[colCount][];
+        int[] column = new int[matrix.length];
+        int col = 0;
+        while (col < colCount) {
+            int row = 0;
+            while (row < matrix.length) {
+                column[row] = matrix[row][col];
+                row++;
+            }
+            clues[col] = lineClues(column);
+            col++;
+        }
+        return clues;
+    }
+
+    public static int[] lineClues(int[] line) {
+        int[] nums = new int[(line.length + 1) / 2];
+        int numsCount = 0;
+        int tempBlock = 0;
+        int index = 0;
+        while (index < line.length) {
+            if (line[index] == PicrossSolver.FILLED_CELL) {
+                tempBlock++;
+            } else if (tempBlock > 0) {
+                nums[numsCount++] = tempBlock;
+                tempBlock = 0;
+            }
+            index++;
+        }
+        if (tempBlock > 0) {
+            nums[numsCount++] = tempBlock;
+        }
+
+        if (numsCount == 0) {
+            return new int[] {0};
+        }
+        return Arrays.copyOf(nums, numsCount);
+    }
+}
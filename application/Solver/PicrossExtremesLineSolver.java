@@ -0,0 +1,170 @@
+package Solver;
+
+import java.util.Arrays;
+
+abstract class PicrossExtremesLineSolver {
+
+    // the returned line belongs to this thread's LineSolverScratch and is only valid until it solves another line
+    protected static int[] tryToSolveLine(int[] line, int[] nums) throws RuntimeException {
+        int lineLength = line.length;
+        int numsCount = nums[0] == 0 ? 0 : nums.length;
+        LineSolverScratch scratch = LineSolverScratch.forCurrentThread();
+        scratch.ensureCapacity(lineLength, numsCount);
+
+        int[] crossedBefore = countCrossedBefore(scratch, line, lineLength);
+        boolean[] fitsFromLeft = findFitsFromLeft(scratch, line, lineLength, nums, numsCount, crossedBefore);
+        if (!fitsFromLeft[numsCount * (lineLength + 1) + lineLength]) {
+            throw new IllegalStateException("No arrangement of nums fits the line");
+        }
+        boolean[] fitsFromRight = findFitsFromRight(scratch, line, lineLength, nums, numsCount, crossedBefore);
+
+        boolean[] couldBeCrossed = scratch.couldBeCrossed;
+        int[] fillCoverage = scratch.fillCoverage;
+        Arrays.fill(couldBeCrossed, 0, lineLength, false);
+        Arrays.fill(fillCoverage, 0, lineLength + 1, 0);
+        collectCrossedPossibilities(line, lineLength, numsCount, fitsFromLeft, fitsFromRight, couldBeCrossed);
+        int numIndex = 0;
+        while (numIndex < numsCount) {
+            collectBlockPossibilities(line, lineLength, nums, numIndex, crossedBefore, fitsFromLeft, fitsFromRight, couldBeCrossed, fillCoverage);
+            numIndex++;
+        }
+
+        int[] newLine = scratch.newLineOfLength(lineLength);
+        System.arraycopy(line, 0, newLine, 0, lineLength);
+        int coverage = 0;
+        int index = 0;
+        while (index < lineLength) {
+            coverage += fillCoverage[index];
+            if (coverage > 0 && !couldBeCrossed[index]) {
+                newLine[index] = PicrossSolver.FILLED_CELL;
+            } else if (coverage == 0 && couldBeCrossed[index]) {
+                newLine[index] = PicrossSolver.CROSSED_CELL;
+            }
+            index++;
+        }
+        return newLine;
+    }
+
+    private static int[] countCrossedBefore(LineSolverScratch scratch, int[] line, int lineLength) {
+        int[] crossedBefore = scratch.crossedBefore;
+        crossedBefore[0] = 0;
+        int index = 0;
+        while (index < lineLength) {
+            crossedBefore[index + 1] = crossedBefore[index] + (line[index] == PicrossSolver.CROSSED_CELL ? 1 : 0);
+            index++;
+        }
+        return crossedBefore;
+    }
+
+    // The tables hold a row of lineLength + 1 entries per num count. fitsFromLeft[j][i] means the first j nums fit in
+    // the first i cells with cell i free to start the next num.
+    private static boolean[] findFitsFromLeft(LineSolverScratch scratch, int[] line, int lineLength, int[] nums, int numsCount, int[] crossedBefore) {
+        int width = lineLength + 1;
+        boolean[] fitsFromLeft = scratch.fitsFromLeft;
+        Arrays.fill(fitsFromLeft, 0, (numsCount + 1) * width, false);
+        fitsFromLeft[0] = true;
+
+        int index = 0;
+        while (index < lineLength) {
+            int numIndex = 0;
+            while (numIndex <= numsCount) {
+                if (fitsFromLeft[numIndex * width + index]) {
+                    if (line[index] != PicrossSolver.FILLED_CELL) {
+                        fitsFromLeft[numIndex * width + index + 1] = true;
+                    }
+                    if (numIndex < numsCount && blockFits(line, lineLength, index, nums[numIndex], crossedBefore)) {
+                        fitsFromLeft[(numIndex + 1) * width + Math.min(index + nums[numIndex] + 1, lineLength)] = true;
+                    }
+                }
+                numIndex++;
+            }
+            index++;
+        }
+        return fitsFromLeft;
+    }
+
+    // fitsFromRight[j][i] means nums j onward fit in the cells from i to the end when a num may start at cell i
+    private static boolean[] findFitsFromRight(LineSolverScratch scratch, int[] line, int lineLength, int[] nums, int numsCount, int[] crossedBefore) {
+        int width = lineLength + 1;
+        boolean[] fitsFromRight = scratch.fitsFromRight;
+        int numIndex = 0;
+        while (numIndex <= numsCount) {
+            fitsFromRight[numIndex * width + lineLength] = numIndex == numsCount;
+            numIndex++;
+        }
+
+        int index = lineLength - 1;
+        while (index >= 0) {
+            numIndex = 0;
+            while (numIndex <= numsCount) {
+                boolean fits = line[index] != PicrossSolver.FILLED_CELL && fitsFromRight[numIndex * width + index + 1];
+                if (!fits && numIndex < numsCount && blockFits(line, lineLength, index, nums[numIndex], crossedBefore)) {
+                    fits = fitsFromRight[(numIndex + 1) * width + Math.min(index + nums[numIndex] + 1, lineLength)];
+                }
+                fitsFromRight[numIndex * width + index] = fits;
+                numIndex++;
+            }
+            index--;
+        }
+        return fitsFromRight;
+    }
+
+    // a num fits at a position if it covers no crossed cell and is not directly followed by a filled cell
+    private static boolean blockFits(int[] line, int lineLength, int position, int num, int[] crossedBefore) {
+        int end = position + num;
+        if (end > lineLength || crossedBefore[end] != crossedBefore[position]) {
+            return false;
+        }
+        return end == lineLength || line[end] != PicrossSolver.FILLED_CELL;
+    }
+
+    private static void collectCrossedPossibilities(int[] line, int lineLength, int numsCount, boolean[] fitsFromLeft, boolean[] fitsFromRight, boolean[] couldBeCrossed) {
+        int index = 0;
+        while (index < lineLength) {
+            if (line[index] != PicrossSolver.FILLED_CELL) {
+                int numIndex = 0;
+                while (numIndex <= numsCount && !couldBeCrossed[index]) {
+                    couldBeCrossed[index] = fitsFromLeft[numIndex * (lineLength + 1) + index] && fitsFromRight[numIndex * (lineLength + 1) + index + 1];
+                    numIndex++;
+                }
+            }
+            index++;
+        }
+    }
+
+    // only positions between the leftmost and rightmost extremes of a num can hold it in a passing arrangement
+    private static void collectBlockPossibilities(int[] line, int lineLength, int[] nums, int numIndex, int[] crossedBefore, boolean[] fitsFromLeft, boolean[] fitsFromRight, boolean[] couldBeCrossed, int[] fillCoverage) {
+        int num = nums[numIndex];
+        int leftmost = findExtremePosition(line, lineLength, nums, numIndex, crossedBefore, fitsFromLeft, fitsFromRight, 0, 1);
+        int rightmost = findExtremePosition(line, lineLength, nums, numIndex, crossedBefore, fitsFromLeft, fitsFromRight, lineLength - num, -1);
+        if (SolverTrace.isEnabled(SolverTrace.Subsystem.LINE_SOLVER)) {
+            SolverTrace.event(SolverTrace.Subsystem.LINE_SOLVER, "numExtremes", "numIndex", numIndex, "leftmost", leftmost, "rightmost", rightmost);
+        }
+
+        int position = leftmost;
+        while (position <= rightmost) {
+            if (isPassingPosition(line, lineLength, nums, numIndex, position, crossedBefore, fitsFromLeft, fitsFromRight)) {
+                fillCoverage[position]++;
+                fillCoverage[position + num]--;
+                if (position + num < lineLength) {
+                    couldBeCrossed[position + num] = true;
+                }
+            }
+            position++;
+        }
+    }
+
+    private static int findExtremePosition(int[] line, int lineLength, int[] nums, int numIndex, int[] crossedBefore, boolean[] fitsFromLeft, boolean[] fitsFromRight, int start, int step) {
+        int position = start;
+        while (!isPassingPosition(line, lineLength, nums, numIndex, position, crossedBefore, fitsFromLeft, fitsFromRight)) {
+            position += step;
+        }
+        return position;
+    }
+
+    private static boolean isPassingPosition(int[] line, int lineLength, int[] nums, int numIndex, int position, int[] crossedBefore, boolean[] fitsFromLeft, boolean[] fitsFromRight) {
+        return fitsFromLeft[numIndex * (lineLength + 1) + position]
+               && blockFits(line, lineLength, position, nums[numIndex], crossedBefore)
+               && fitsFromRight[(numIndex + 1) * (lineLength + 1) + Math.min(position + nums[numIndex] + 1, lineLength)];
+    }
+}
@@ -1,42 +1,44 @@
 package Solver;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
-import java.util.stream.IntStream;
 
 abstract class PicrossLineSolver {
 
+    // the returned line belongs to this thread's LineSolverScratch and is only valid until it solves another line
     protected static int[] tryToSolveLine(int[] line, int[] nums) throws RuntimeException {
-        PicrossSolver.debug("Given line " + Arrays.toString(line) + " and nums " + Arrays.toString(nums));
         int lineLength = line.length;
         int numsCount = nums.length;
+        LineSolverScratch scratch = LineSolverScratch.forCurrentThread();
+        scratch.ensureCapacity(lineLength, numsCount);
+        int[] newLine = scratch.newLineOfLength(lineLength);
 
         if (nums[0] == 0) {
-            PicrossSolver.debug("Line is confimed crossed out");
-            int[] newLine = new int[lineLength];
             Arrays.fill(newLine, PicrossSolver.CROSSED_CELL);
-            PicrossSolver.debug("Returning line " + Arrays.toString(newLine));
             return newLine;
         }
 
-        SegmentOfUncrossedBlocks[] segments = findSegments(line, lineLength);
-        int countSegments = segments.length;
-        PicrossSolver.debug("Found " + countSegments + " segments total");
-        int[] distribution = new int[numsCount];
-
-        recursivelyTryDistributions(0, 0, 0, segments, countSegments, distribution, nums, numsCount, false);
-        
-        int[] newLine = line.clone();
-        recursivelyWriteSegmentsToNewLine(newLine, segments, 0);
-        
-        PicrossSolver.debug("Returning line " + Arrays.toString(newLine));
+        int countSegments = findSegments(scratch, line, lineLength);
+        if (SolverTrace.isEnabled(SolverTrace.Subsystem.LINE_SOLVER)) {
+            SolverTrace.event(SolverTrace.Subsystem.LINE_SOLVER, "segments", "starts", Arrays.copyOf(scratch.segmentStarts, countSegments), "lengths", Arrays.copyOf(scratch.segmentLengths, countSegments));
+        }
+        if (countSegments == 0) {
+            throw new IllegalStateException("No uncrossed cells left to hold the nums");
+        }
+        Arrays.fill(scratch.distribution, 0, numsCount, 0);
+
+        recursivelyTryDistributions(0, 0, 0, scratch, line, countSegments, nums, numsCount, false);
+
+        System.arraycopy(line, 0, newLine, 0, lineLength);
+        int segment = 0;
+        while (segment < countSegments) {
+            SegmentOfUncrossedBlocks.writeNewInfo(scratch, segment, newLine);
+            segment++;
+        }
         return newLine;
     }
 
-    private static SegmentOfUncrossedBlocks[] findSegments(int[] line, int lineLength) {
-        ArrayList<SegmentOfUncrossedBlocks> segmentsList = new ArrayList<>();
-
+    private static int findSegments(LineSolverScratch scratch, int[] line, int lineLength) {
+        int countSegments = 0;
         int startIndex = 0;
         int currentIndex = 0;
         while (currentIndex < lineLength) {
@@ -49,41 +51,44 @@ abstract class PicrossLineSolver {
             while (currentIndex < lineLength && line[currentIndex] != PicrossSolver.CROSSED_CELL) {
                 currentIndex++;
             }
-            PicrossSolver.debug("Found segment: " + Arrays.toString(Arrays.copyOfRange(line, startIndex, currentIndex)));
-            segmentsList.add(new SegmentOfUncrossedBlocks(Arrays.copyOfRange(line, startIndex, currentIndex), startIndex));
+            SegmentOfUncrossedBlocks.createSegment(scratch, line, countSegments, startIndex, currentIndex - startIndex);
+            countSegments++;
         }
 
-        return segmentsList.toArray(new SegmentOfUncrossedBlocks[segmentsList.size()]);
+        return countSegments;
     }
 
-    private static boolean recursivelyTryDistributions(int numIndex, int segmentIndex, int spacesTaken, SegmentOfUncrossedBlocks[] segments, int countSegments, int[] distribution, int[] nums, int numsCount, boolean foundPassing) throws RuntimeException {
+    private static boolean recursivelyTryDistributions(int numIndex, int segmentIndex, int spacesTaken, LineSolverScratch scratch, int[] line, int countSegments, int[] nums, int numsCount, boolean foundPassing) throws RuntimeException {
+        int[] distribution = scratch.distribution;
+        int[] segmentLengths = scratch.segmentLengths;
+
         // if the number fits in the room left in the segment, put it there, then either try the distribution or move on to the next number
-        if (segments[segmentIndex].len - spacesTaken >= nums[numIndex]) {
+        if (segmentLengths[segmentIndex] - spacesTaken >= nums[numIndex]) {
             distribution[numIndex] = segmentIndex;
             if (numIndex == numsCount - 1) {
-                foundPassing = tryDistribution(distribution, nums, numsCount, segments, countSegments) || foundPassing;
+                foundPassing = tryDistribution(scratch, line, nums, numsCount, countSegments) || foundPassing;
             } else {
-                foundPassing = recursivelyTryDistributions(numIndex + 1, segmentIndex, spacesTaken + nums[numIndex] + 1, segments, countSegments, distribution, nums, numsCount, foundPassing) || foundPassing;
+                foundPassing = recursivelyTryDistributions(numIndex + 1, segmentIndex, spacesTaken + nums[numIndex] + 1, scratch, line, countSegments, nums, numsCount, foundPassing) || foundPassing;
             }
         }
 
         // try the rest of the numbers in the rest of the segments starting with putting the next number in each of the other segments
         for (int beginIndexForRest = segmentIndex + 1; beginIndexForRest < countSegments; beginIndexForRest++) {
-            if (segments[beginIndexForRest].len < nums[numIndex]) {
+            if (segmentLengths[beginIndexForRest] < nums[numIndex]) {
                 continue;
             }
 
             distribution[numIndex] = beginIndexForRest;
             if (numIndex == numsCount - 1) {
-                foundPassing = tryDistribution(distribution, nums, numsCount, segments, countSegments) || foundPassing;
+                foundPassing = tryDistribution(scratch, line, nums, numsCount, countSegments) || foundPassing;
             } else {
-                foundPassing = recursivelyTryDistributions(numIndex + 1, beginIndexForRest, nums[numIndex] + 1, segments, countSegments, distribution, nums, numsCount, foundPassing) || foundPassing;
+                foundPassing = recursivelyTryDistributions(numIndex + 1, beginIndexForRest, nums[numIndex] + 1, scratch, line, countSegments, nums, numsCount, foundPassing) || foundPassing;
             }
         }
 
         // account for cases where the first n segments are empty
         if (numIndex == 0 && segmentIndex < countSegments - 1) {
-            foundPassing = recursivelyTryDistributions(0, segmentIndex + 1, 0, segments, countSegments, distribution, nums, numsCount, foundPassing) || foundPassing;
+            foundPassing = recursivelyTryDistributions(0, segmentIndex + 1, 0, scratch, line, countSegments, nums, numsCount, foundPassing) || foundPassing;
         }
 
         if (distribution[0] == countSegments - 1 && !foundPassing) {
@@ -92,22 +97,26 @@ abstract class PicrossLineSolver {
         return foundPassing;
     }
 
-    private static boolean tryDistribution(int[] distribution, int[] nums, int numsCount, SegmentOfUncrossedBlocks[] segments, int countSegments) throws RuntimeException {
-        PicrossSolver.debug("Trying distribution " + Arrays.toString(distribution));
+    private static boolean tryDistribution(LineSolverScratch scratch, int[] line, int[] nums, int numsCount, int countSegments) throws RuntimeException {
+        int[] distribution = scratch.distribution;
+        scratch.distributionsTried++;
+        if (SolverTrace.isEnabled(SolverTrace.Subsystem.LINE_SOLVER)) {
+            SolverTrace.event(SolverTrace.Subsystem.LINE_SOLVER, "tryDistribution", "distribution", Arrays.copyOf(distribution, numsCount));
+        }
         int previousSegmentIndex = -1;
         int leftNumsIndex = 0;
         int rightNumsIndex = 1;
         while (rightNumsIndex <= numsCount) {
             int segmentIndex = distribution[leftNumsIndex]; 
 
-            if (segmentsCantBeEmpty(segments, previousSegmentIndex + 1, segmentIndex)) {
+            if (segmentsCantBeEmpty(scratch, line, previousSegmentIndex + 1, segmentIndex)) {
                 return false;
             }
 
             while (rightNumsIndex < numsCount && distribution[rightNumsIndex] == segmentIndex) {
                 rightNumsIndex++;
             }
-            if (segments[segmentIndex].notPossibleToFit(Arrays.copyOfRange(nums, leftNumsIndex, rightNumsIndex))) {
+            if (SegmentOfUncrossedBlocks.notPossibleToFit(scratch, line, segmentIndex, nums, leftNumsIndex, rightNumsIndex - leftNumsIndex)) {
                 return false;
             }
 
@@ -115,32 +124,26 @@ abstract class PicrossLineSolver {
             leftNumsIndex = rightNumsIndex;
             rightNumsIndex++;
         }
-        if (segmentsCantBeEmpty(segments, previousSegmentIndex + 1, countSegments)) {
+        if (segmentsCantBeEmpty(scratch, line, previousSegmentIndex + 1, countSegments)) {
             return false;
         }
-        PicrossSolver.debug("Distribution passed: " + Arrays.toString(distribution));
 
-        for (SegmentOfUncrossedBlocks segment : segments) {
-            segment.assessPossibilities();
+        int segment = 0;
+        while (segment < countSegments) {
+            SegmentOfUncrossedBlocks.assessPossibilities(scratch, line, segment, nums);
+            segment++;
         }
         return true;
     }
 
-    private static boolean segmentsCantBeEmpty(SegmentOfUncrossedBlocks[] segments, int start, int end) {
-        PicrossSolver.debug("Check segments " + start + " to " + end + " cannot be empty");
-        return IntStream.range(start, end)
-                        .anyMatch(index -> segments[index].notPossibleToFit(new int[] {0}));
-    }
-
-    private static void recursivelyWriteSegmentsToNewLine(int[] newLine, SegmentOfUncrossedBlocks[] segments, int segmentIndex) {
-        SegmentOfUncrossedBlocks segment = segments[segmentIndex];
-        int[] newInfo = segment.getNewInfo();
-        
-        Iterator<Integer> iterator = IntStream.range(0, segment.len).iterator();
-        iterator.forEachRemaining(index -> newLine[segment.linePosition + index] = newInfo[index]);
-
-        if (segmentIndex < segments.length - 1) {
-            recursivelyWriteSegmentsToNewLine(newLine, segments, segmentIndex + 1);
+    private static boolean segmentsCantBeEmpty(LineSolverScratch scratch, int[] line, int start, int end) {
+        int segment = start;
+        while (segment < end) {
+            if (SegmentOfUncrossedBlocks.notPossibleToFit(scratch, line, segment, null, 0, 0)) {
+                return true;
+            }
+            segment++;
         }
+        return false;
     }
 }
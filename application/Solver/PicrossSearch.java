@@ -0,0 +1,293 @@
+package Solver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+
+// Depth first search over the cells that line solving alone cannot decide. Each branch assumes one cell of the most
+// constrained line, propagates, and is taken back through the grid's trail. When a branch runs into a contradiction
+// the decisions that led to it are learned as a conflict, and any later branch that already holds all of them is
+// abandoned without searching it. When both branches of a decision fail, the search jumps straight back to the
+// latest decision that either failure depended on.
+public class PicrossSearch {
+    public static enum Outcome { UNIQUE, MULTIPLE, NONE, TIMED_OUT }
+    public final static int MAX_LEARNED_CONFLICTS = 4096;
+    private final static int MAX_CONFLICT_SIZE = 24;
+    private final PicrossSolver solver;
+    private final PackedGrid grid;
+    private final int numCols;
+    private final ArrayList<int[][]> solutions = new ArrayList<>();
+    private final ArrayDeque<int[]> learnedConflicts = new ArrayDeque<>();
+    private final ArrayList<Decision> decisions = new ArrayList<>();
+    // the depth of each decision, indexed by where it sits on the trail
+    private final int[] decisionDepths;
+    // the decisions, by depth, that the latest failure depends on, and whether it is a real conflict
+    private BitSet conflict = new BitSet();
+    private boolean conflictIsNogood = true;
+    private long nodeCount = 0;
+    private long prunedCount = 0;
+
+    public PicrossSearch(int[][] rowHeaders, int[][] colHeaders) {
+        solver = new PicrossSolver(rowHeaders, colHeaders, Optional.empty());
+        solver.stopRecordingSteps();
+        grid = solver.getGrid();
+        numCols = colHeaders.length;
+        decisionDepths = new int[rowHeaders.length * colHeaders.length];
+    }
+
+    public void setLineSolutionCache(LineSolutionCache lineSolutionCache) {
+        solver.setLineSolutionCache(lineSolutionCache);
+    }
+
+    // stops at the second solution since that is enough to tell multiple from unique
+    public Outcome search(long timeBudgetMillis) {
+        return search(timeBudgetMillis, 2);
+    }
+
+    public Outcome search(long timeBudgetMillis, int solutionLimit) {
+        long deadline = System.nanoTime() + timeBudgetMillis * 1_000_000L;
+        if (!solver.propagateAll()) {
+            return Outcome.NONE;
+        }
+        grid.startTrail();
+
+        boolean failed = false;
+        while (true) {
+            if (System.nanoTime() > deadline) {
+                if (SolverTrace.isEnabled(SolverTrace.Subsystem.SEARCH)) {
+                    SolverTrace.event(SolverTrace.Subsystem.SEARCH, "timedOut", "nodes", nodeCount);
+                }
+                return Outcome.TIMED_OUT;
+            }
+            nodeCount++;
+
+            if (!failed && grid.isComplete()) {
+                solutions.add(grid.toIntGrid());
+                if (solutions.size() >= solutionLimit) {
+                    return Outcome.MULTIPLE;
+                }
+                // a solution is not a conflict, so every decision above it has to have its other branch searched
+                failed = true;
+                conflict = new BitSet();
+                conflict.set(0, decisions.size());
+                conflictIsNogood = false;
+            } else if (!failed) {
+                int[] learnedConflict = findHeldLearnedConflict();
+                if (learnedConflict != null) {
+                    prunedCount++;
+                    failed = true;
+                    explainCells(learnedConflict);
+                }
+            }
+
+            if (!failed) {
+                int[] cell = chooseCell();
+                Decision decision = new Decision(grid.trailSize(), cell[0], cell[1]);
+                decisionDepths[decision.trailMark] = decisions.size();
+                decisions.add(decision);
+                failed = !branch(decision);
+                continue;
+            }
+
+            if (!backtrack()) {
+                break;
+            }
+            failed = !branch(decisions.get(decisions.size() - 1));
+        }
+
+        return solutions.isEmpty() ? Outcome.NONE : (solutions.size() == 1 ? Outcome.UNIQUE : Outcome.MULTIPLE);
+    }
+
+    // Takes back decisions until one is left whose other branch still has to be tried, and switches it to that
+    // branch. Decisions that had no part in the conflict are jumped over, since their other branch would fail the same
+    // way. Returns false once there is nothing left to try.
+    private boolean backtrack() {
+        while (!decisions.isEmpty()) {
+            int depth = decisions.size() - 1;
+            Decision decision = decisions.get(depth);
+            solver.undoTo(decision.trailMark);
+            if (!conflict.get(depth)) {
+                decisions.remove(depth);
+                continue;
+            }
+
+            conflict.clear(depth);
+            if (decision.value == PicrossSolver.FILLED_CELL) {
+                decision.value = PicrossSolver.CROSSED_CELL;
+                decision.filledConflict = conflict;
+                decision.filledConflictIsNogood = conflictIsNogood;
+                return true;
+            }
+
+            // neither branch worked, so whatever both of them failed on is enough to rule out the decisions above
+            conflict.or(decision.filledConflict);
+            conflictIsNogood &= decision.filledConflictIsNogood;
+            decisions.remove(depth);
+            if (conflictIsNogood) {
+                learn(conflict);
+            }
+        }
+        return false;
+    }
+
+    public List<int[][]> getSolutions() {
+        return solutions;
+    }
+
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    public long getPrunedCount() {
+        return prunedCount;
+    }
+
+    public int getLearnedConflictCount() {
+        return learnedConflicts.size();
+    }
+
+    private boolean branch(Decision decision) {
+        if (SolverTrace.isEnabled(SolverTrace.Subsystem.SEARCH)) {
+            SolverTrace.event(SolverTrace.Subsystem.SEARCH, "assume", "depth", decisions.size() - 1, "row", decision.row, "col", decision.col, "value", decision.value);
+        }
+        if (solver.assume(decision.row, decision.col, decision.value)) {
+            return true;
+        }
+        explainConflictLine();
+        if (conflictIsNogood) {
+            learn(conflict);
+        }
+        return false;
+    }
+
+    // the first unknown cell of the line with the fewest unknown cells left
+    private int[] chooseCell() {
+        int bestLine = -1;
+        int bestUnknown = Integer.MAX_VALUE;
+        int line = 0;
+        while (line < grid.lineCount()) {
+            int unknown = grid.countUnknown(line);
+            if (unknown > 0 && unknown < bestUnknown) {
+                bestLine = line;
+                bestUnknown = unknown;
+            }
+            line++;
+        }
+
+        long[] knownFilled = grid.knownFilled(bestLine);
+        long[] knownCrossed = grid.knownCrossed(bestLine);
+        int word = 0;
+        while ((knownFilled[word] | knownCrossed[word]) == -1L) {
+            word++;
+        }
+        int position = (word << 6) + Long.numberOfTrailingZeros(~(knownFilled[word] | knownCrossed[word]));
+        return new int[] {grid.rowOf(bestLine, position), grid.colOf(bestLine, position)};
+    }
+
+    // walks the trail back from the line that failed to the decisions its known cells came from
+    private void explainConflictLine() {
+        int conflictLine = solver.getConflictLine();
+        if (conflictLine < 0) {
+            conflict = new BitSet();
+            conflict.set(0, decisions.size());
+            conflictIsNogood = true;
+            return;
+        }
+
+        boolean[] needed = new boolean[grid.trailSize()];
+        markKnownCells(conflictLine, needed.length, needed);
+        explain(needed);
+    }
+
+    private void explainCells(int[] cells) {
+        boolean[] needed = new boolean[grid.trailSize()];
+        int index = 0;
+        while (index < cells.length) {
+            int trailPosition = grid.trailPosition(cells[index] / numCols, cells[index] % numCols);
+            if (trailPosition >= 0) {
+                needed[trailPosition] = true;
+            }
+            index += 2;
+        }
+        explain(needed);
+    }
+
+    private void explain(boolean[] needed) {
+        conflict = new BitSet();
+        conflictIsNogood = true;
+        int position = needed.length - 1;
+        while (position >= 0) {
+            if (needed[position]) {
+                int reason = grid.trailReason(position);
+                if (reason == PackedGrid.DECISION) {
+                    conflict.set(decisionDepths[position]);
+                } else {
+                    markKnownCells(reason, position, needed);
+                }
+            }
+            position--;
+        }
+    }
+
+    private void learn(BitSet decisionSet) {
+        int conflictSize = decisionSet.cardinality();
+        if (conflictSize == 0 || conflictSize > MAX_CONFLICT_SIZE) {
+            return;
+        }
+        int[] learnedConflict = new int[2 * conflictSize];
+        int index = 0;
+        int depth = decisionSet.nextSetBit(0);
+        while (depth >= 0) {
+            Decision decision = decisions.get(depth);
+            learnedConflict[index++] = decision.row * numCols + decision.col;
+            learnedConflict[index++] = decision.value;
+            depth = decisionSet.nextSetBit(depth + 1);
+        }
+        if (learnedConflicts.size() == MAX_LEARNED_CONFLICTS) {
+            learnedConflicts.pollLast();
+        }
+        learnedConflicts.push(learnedConflict);
+    }
+
+    private void markKnownCells(int line, int before, boolean[] needed) {
+        int position = 0;
+        while (position < grid.lineLength(line)) {
+            int trailPosition = grid.trailPosition(grid.rowOf(line, position), grid.colOf(line, position));
+            if (trailPosition >= 0 && trailPosition < before) {
+                needed[trailPosition] = true;
+            }
+            position++;
+        }
+    }
+
+    private int[] findHeldLearnedConflict() {
+        for (int[] learnedConflict : learnedConflicts) {
+            int index = 0;
+            while (index < learnedConflict.length && grid.get(learnedConflict[index] / numCols, learnedConflict[index] % numCols) == learnedConflict[index + 1]) {
+                index += 2;
+            }
+            if (index == learnedConflict.length) {
+                return learnedConflict;
+            }
+        }
+        return null;
+    }
+
+    private static class Decision {
+        private final int trailMark;
+        private final int row;
+        private final int col;
+        private int value = PicrossSolver.FILLED_CELL;
+        // why the filled branch failed, kept until the crossed branch has been tried too
+        private BitSet filledConflict;
+        private boolean filledConflictIsNogood;
+
+        private Decision(int trailMark, int row, int col) {
+            this.trailMark = trailMark;
+            this.row = row;
+            this.col = col;
+        }
+    }
+}
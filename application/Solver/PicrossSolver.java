@@ -1,9 +1,15 @@
 package Solver;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.function.IntConsumer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
 import java.util.stream.IntStream;
 
 public class PicrossSolver {
@@ -12,101 +18,419 @@ public class PicrossSolver {
 	private final int[][] colHeaders;
 	private final int numRows;
 	private final int numCols;
-	private final int[][] intGrid;
+	private final PackedGrid grid;
     private final Optional<int[][]> solution;
     public final static int EMPTY_CELL = 2;
     public final static int FILLED_CELL = 1;
     public final static int CROSSED_CELL = 0;
-    private ConcurrentLinkedQueue<SolutionDisplayStep> solutionDisplaySteps = new ConcurrentLinkedQueue<SolutionDisplayStep>();
-    private boolean foundInformation = false;
 	private boolean impossible = false;
+    private final LineWorklist worklist;
+    private long lineSolveCount = 0;
+    private int conflictLine = -1;
+    private SolutionStepSink stepSink = SolutionStepSink.NONE;
+    private int stepGroup = 0;
+    private LineSolverEngine lineSolverEngine = LineSolverEngine.EXTREMES;
+    private LineSolutionCache lineSolutionCache = new LineSolutionCache();
+    private ForkJoinPool lineSolvingPool = null;
+    private ForkJoinPool probingPool = null;
+    private final static int PROBES_PER_WORKER = 4;
+    // shared with every probe, so probes running on the probing pool, whose threads are never interrupted, stop too
+    private AtomicBoolean cancelled = new AtomicBoolean();
+    private final static long PROGRESS_INTERVAL = 4096;
+    private LongConsumer progressListener = lineSolves -> {};
+    private long nextProgressReport = PROGRESS_INTERVAL;
+    // sub-solvers add to the metrics of the solver that made them
+    private SolverMetrics metrics = new SolverMetrics();
+    private long lineSolveCountAtStart = 0;
+    private List<PropagationRule> propagationRules = PropagationRule.defaults();
+    // only probes made by propagation rules have one
+    private ProbeScope probeScope = null;
+    // while rules run, when each line last changed, so a rule can pass over cells nothing has changed near since it last
+    // ran; null otherwise
+    private long[] lineChangedAt = null;
+    private long changeCount = 0;
+    private long[] rulesLastRanAt;
+    private long ruleLastRanAt = -1;
+    // while guess and check runs, for each cell probed without a contradiction, the change count when it was probed, or
+    // -1, and some of what each value implied
+    private long[] probedAt = null;
+    private int[][] impliedByFill;
+    private int[][] impliedByCross;
+    private final static int MAX_REMEMBERED_IMPLICATIONS = 64;
+    // for each cell, at twice its index plus 1 if filled, the change count when some probe without a contradiction implied
+    // that value; line solving finds everything a line allows, so a probe of an implied value cannot find one either
+    private long[] consistentAt;
+    private int[] spiralCells;
+    private BitSet spiralFocusesCols;
 
 	public PicrossSolver(int[][] rowHeaders, int[][] colHeaders, Optional<int[][]> solution) {
 		this.rowHeaders = rowHeaders;
 		this.colHeaders = colHeaders;
 		numRows = rowHeaders.length;
 		numCols = colHeaders.length;
-		intGrid = new int[numRows][numCols];
+		grid = new PackedGrid(numRows, numCols);
         this.solution = solution;
+        worklist = new LineWorklist(grid.lineCount());
+        worklist.addAll();
 
-        for (int[] row : intGrid) {
-            Arrays.fill(row, EMPTY_CELL);
+        if (SolverTrace.isEnabled(SolverTrace.Subsystem.PROPAGATION)) {
+            SolverTrace.event(SolverTrace.Subsystem.PROPAGATION, "createSolver", "rows", numRows, "cols", numCols);
         }
-        debug("Create solver on " + numRows + " rows and " + numCols + " cols");
 	}
 
-    private PicrossSolver(int[][] progress, int row, int col, int value, int[][] rowHeaders, int[][] colHeaders) {
-        numRows = progress.length;
-        numCols = progress[0].length;
-		intGrid = new int[numRows][numCols];
+    private PicrossSolver(PicrossSolver parent, int row, int col, int value) {
+        numRows = parent.numRows;
+        numCols = parent.numCols;
+		grid = new PackedGrid(parent.grid);
+        grid.set(row, col, value);
+        worklist = new LineWorklist(grid.lineCount());
+        worklist.add(grid.rowLine(row));
+        worklist.add(grid.colLine(col));
+
+        rowHeaders = parent.rowHeaders;
+        colHeaders = parent.colHeaders;
+        solution = Optional.empty();
+        lineSolverEngine = parent.lineSolverEngine;
+        lineSolutionCache = parent.lineSolutionCache;
+        cancelled = parent.cancelled;
+        metrics = parent.metrics;
+        metrics.countProbeSolver();
+    }
 
-        for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
-            intGrid[rowIndex] = progress[rowIndex].clone();
-        }
-        intGrid[row][col] = value;
+    public void setLineSolverEngine(LineSolverEngine lineSolverEngine) {
+        this.lineSolverEngine = lineSolverEngine;
+    }
 
-        this.rowHeaders = rowHeaders;
-        this.colHeaders = colHeaders;
-        this.solution = Optional.empty();
+    // lets several solvers over the same clues, such as repeated checks of one drawing, reuse each other's line solutions
+    public void setLineSolutionCache(LineSolutionCache lineSolutionCache) {
+        this.lineSolutionCache = lineSolutionCache;
+    }
+
+    public LineSolutionCache getLineSolutionCache() {
+        return lineSolutionCache;
+    }
+
+    // with a pool set, each round solves every waiting row at once and then every waiting column at once
+    public void setLineSolvingPool(ForkJoinPool lineSolvingPool) {
+        this.lineSolvingPool = lineSolvingPool;
     }
 	
 	public boolean solvable() {
-        debug("Checking solvability");
+        if (SolverTrace.isEnabled(SolverTrace.Subsystem.PROPAGATION)) {
+            SolverTrace.event(SolverTrace.Subsystem.PROPAGATION, "checkSolvability");
+        }
+        startMetrics();
+        long startTime = System.nanoTime();
         solve();
+        metrics.addInitialPassNanos(System.nanoTime() - startTime);
 
-        return finished();
+        return finishMetrics(finished());
     }
 
     private boolean finished() {
         if (impossible) {
 			return false;
 		}
-        return !Arrays.stream(intGrid)
-                      .anyMatch(row -> Arrays.stream(row)
-                      .anyMatch(cell -> cell == EMPTY_CELL));
+        return grid.isComplete();
+    }
+
+    // steps go nowhere unless a sink is set, and the solvers made for guess and check never record any
+    public void setSolutionStepSink(SolutionStepSink stepSink) {
+        this.stepSink = stepSink;
+    }
+
+    // for callers that only want the answer and not the steps to animate it
+    public void stopRecordingSteps() {
+        stepSink = SolutionStepSink.NONE;
+    }
+
+    // includes the line solves of every sub-solver created for guess and check
+    public long getLineSolveCount() {
+        return lineSolveCount;
+    }
+
+    // what the latest call to solvable or solvableWithGuessAndCheck cost
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void startMetrics() {
+        metrics = new SolverMetrics();
+        lineSolveCountAtStart = lineSolveCount;
+    }
+
+    private boolean finishMetrics(boolean result) {
+        metrics.setLineSolveCount(lineSolveCount - lineSolveCountAtStart);
+        if (stepSink instanceof SolutionStepBuffer stepBuffer) {
+            metrics.setPeakStepQueueDepth(stepBuffer.getPeakSize());
+        }
+        SolverStatistics.record(metrics);
+        return result;
+    }
+
+    // called on the solving thread with the line solve count every few thousand line solves
+    public void setProgressListener(LongConsumer progressListener) {
+        this.progressListener = progressListener;
     }
 
-    public ConcurrentLinkedQueue<SolutionDisplayStep> getSolutionSteps() {
-        return solutionDisplaySteps;
+    // every finished line solve comes through here, so it is also where an interrupted solve stops
+    private void countLineSolves(long count) {
+        lineSolveCount += count;
+        if (lineSolveCount >= nextProgressReport) {
+            progressListener.accept(lineSolveCount);
+            nextProgressReport = lineSolveCount + PROGRESS_INTERVAL;
+        }
+        if (Thread.currentThread().isInterrupted() || cancelled.get()) {
+            throw new SolverCancelledException("Stopped after " + lineSolveCount + " line solves");
+        }
     }
 	
 	private void solve() {
 		try {
-            IntStream.range(0, numRows)
-                     .iterator()
-                     .forEachRemaining((IntConsumer) this::updateRow);
-            IntStream.range(0, numCols)
-                     .iterator()
-                     .forEachRemaining((IntConsumer) this::updateCol);
-
-			while (foundInformation) {
-				foundInformation = false;
-                IntStream.range(0, numRows)
-                         .iterator()
-                         .forEachRemaining((IntConsumer) this::updateRowDoPerpendicularJumps);
-				IntStream.range(0, numCols)
-                         .iterator()
-                         .forEachRemaining((IntConsumer) this::updateColDoPerpendicularJumps);
-			}
+            propagate();
 		} catch(IllegalStateException e) {
-            debug("Exiting due to impossibility: " + e);
+            metrics.countContradiction();
+            if (SolverTrace.isEnabled(SolverTrace.Subsystem.PROPAGATION)) {
+                SolverTrace.event(SolverTrace.Subsystem.PROPAGATION, "contradiction", "line", conflictLine, "reason", e.getMessage());
+            }
 			impossible = true;
-		} catch(Exception e) {
-            debug("Other exception occurred" + e);
-            impossible = true;
-        }
+            worklist.clear();
+		}
 	}
 
+    // every line starts queued, after that a line is queued again only when one of its cells changes
+    private void propagate() throws RuntimeException {
+        if (lineSolvingPool != null) {
+            propagateInRounds();
+            return;
+        }
+
+        while (!worklist.isEmpty()) {
+            int line = worklist.poll();
+            if (probeScope != null && !probeScope.take(line)) {
+                continue;
+            }
+            if (SolverTrace.isEnabled(SolverTrace.Subsystem.PROPAGATION)) {
+                SolverTrace.event(SolverTrace.Subsystem.PROPAGATION, "updateLine", grid.isColumn(line) ? "column" : "row", grid.isColumn(line) ? line - numRows : line);
+            }
+            conflictLine = line;
+            updateLine(line);
+            countLineSolves(1);
+        }
+    }
+
+    // no two rows share a cell and neither do two columns, so the lines of one side can be solved together against
+    // the same grid and then written back one after another in order
+    private void propagateInRounds() throws RuntimeException {
+        boolean columns = false;
+        conflictLine = -1;
+        while (!worklist.isEmpty()) {
+            int[] lines = columns ? worklist.pollRange(numRows, numRows + numCols) : worklist.pollRange(0, numRows);
+            if (SolverTrace.isEnabled(SolverTrace.Subsystem.PROPAGATION)) {
+                SolverTrace.event(SolverTrace.Subsystem.PROPAGATION, "parallelRound", columns ? "columns" : "rows", lines);
+            }
+            LineSolutionCache.SolvedLine[] solvedLines = lineSolvingPool.submit(() -> Arrays.stream(lines)
+                                                                                          .parallel()
+                                                                                          .mapToObj(line -> lineSolutionCache.tryToSolveLine(lineSolverEngine, grid, line, numsFor(line), metrics))
+                                                                                          .toArray(LineSolutionCache.SolvedLine[]::new))
+                                                                        .join();
+            int index = 0;
+            while (index < lines.length) {
+                applySolvedLine(lines[index], solvedLines[index]);
+                countLineSolves(1);
+                index++;
+            }
+            columns = !columns;
+        }
+    }
+
+    private int[] numsFor(int line) {
+        return grid.isColumn(line) ? colHeaders[line - numRows] : rowHeaders[line];
+    }
+
+    // with a pool set, guess and check tries a batch of cells at a time instead of stopping at the first contradiction
+    public void setProbingPool(ForkJoinPool probingPool) {
+        this.probingPool = probingPool;
+    }
+
+    // the rules solvableWithGuessAndCheck runs before probing, in order; PropagationRule.defaults() unless set
+    public void setPropagationRules(List<PropagationRule> propagationRules) {
+        this.propagationRules = propagationRules;
+    }
+
     public boolean solvableWithGuessAndCheck() {
-        while (runGuessAndCheckRoutine()) {
+        startMetrics();
+        long startTime = System.nanoTime();
+        solve();
+        metrics.addInitialPassNanos(System.nanoTime() - startTime);
+        lineChangedAt = new long[grid.lineCount()];
+        rulesLastRanAt = new long[propagationRules.size()];
+        Arrays.fill(rulesLastRanAt, -1);
+        if (probingPool == null) {
+            findSpiralCells();
+            probedAt = new long[numRows * numCols];
+            Arrays.fill(probedAt, -1);
+            impliedByFill = new int[numRows * numCols][];
+            impliedByCross = new int[numRows * numCols][];
+            consistentAt = new long[2 * numRows * numCols];
+            Arrays.fill(consistentAt, -1);
+        }
+        while (!impossible) {
+            runPropagationRules();
+            if (impossible || grid.isComplete()) {
+                break;
+            }
+            startTime = System.nanoTime();
+            boolean deducedCell = probingPool != null ? runParallelProbingRound() : runGuessAndCheckRoutine();
+            metrics.addProbingNanos(System.nanoTime() - startTime);
+            if (!deducedCell) {
+                break;
+            }
+            startTime = System.nanoTime();
             solve();
+            metrics.addPropagationNanos(System.nanoTime() - startTime);
         }
 
-        return finished();
+        lineChangedAt = null;
+        probedAt = null;
+        impliedByFill = null;
+        impliedByCross = null;
+        consistentAt = null;
+        return finishMetrics(finished());
+    }
+
+    // goes back to the first rule after any rule deduces something, and stops when none of them can
+    private void runPropagationRules() {
+        int ruleIndex = 0;
+        while (!impossible && ruleIndex < propagationRules.size() && !grid.isComplete()) {
+            PropagationRule rule = propagationRules.get(ruleIndex);
+            long startTime = System.nanoTime();
+            int deducedCount = 0;
+            ruleLastRanAt = rulesLastRanAt[ruleIndex];
+            rulesLastRanAt[ruleIndex] = changeCount;
+            try {
+                deducedCount = rule.apply(this);
+            } catch (IllegalStateException e) {
+                metrics.countContradiction();
+                if (SolverTrace.isEnabled(SolverTrace.Subsystem.PROBING)) {
+                    SolverTrace.event(SolverTrace.Subsystem.PROBING, "ruleContradiction", "rule", rule.getName(), "reason", e.getMessage());
+                }
+                impossible = true;
+                worklist.clear();
+            }
+            metrics.countRule(rule.getName(), deducedCount, System.nanoTime() - startTime);
+
+            if (deducedCount > 0) {
+                startTime = System.nanoTime();
+                solve();
+                metrics.addPropagationNanos(System.nanoTime() - startTime);
+                ruleIndex = 0;
+            } else {
+                ruleIndex++;
+            }
+        }
     }
 
+    // Goes through the undecided cells in rankedCells order, carrying on after each deduction rather than starting over.
+    // A cell probed before without a contradiction is only probed again once its row or column has changed, and until
+    // then is checked against what its probes implied, since a value whose implications the grid now contradicts cannot
+    // be right either. If that finds nothing, every cell the grid has changed under since its probe is probed again, so
+    // returning false still means no probe can find anything.
     private boolean runGuessAndCheckRoutine() {
+        int[] cells = rankedCells();
+        boolean deducedCell = false;
+        for (boolean confirming : new boolean[] {false, true}) {
+            for (int cell : cells) {
+                if (impossible) {
+                    return false;
+                }
+                int row = cell / numCols;
+                int col = cell % numCols;
+                if (grid.get(row, col) != EMPTY_CELL) {
+                    continue;
+                }
+                boolean focusColNums = spiralFocusesCols.get(cell);
+                if (!confirming && probedAt[cell] >= 0 && lineChangedAt[grid.rowLine(row)] <= probedAt[cell] && lineChangedAt[grid.colLine(col)] <= probedAt[cell]) {
+                    int ruledOut = valueRuledOutByImplications(cell);
+                    if (ruledOut != EMPTY_CELL) {
+                        setGuessedCell(row, col, ruledOut == FILLED_CELL ? CROSSED_CELL : FILLED_CELL, focusColNums);
+                        solve();
+                        deducedCell = true;
+                    }
+                } else if (!confirming || probedAt[cell] < changeCount) {
+                    deducedCell |= probeCell(row, col, focusColNums);
+                }
+            }
+            if (deducedCell) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // cells in rows and columns with few undecided cells left come first, as a probe there is the likeliest to run into a
+    // contradiction, and ties keep the spiral order
+    private int[] rankedCells() {
+        int[] unknownCounts = new int[grid.lineCount()];
+        int line = 0;
+        while (line < unknownCounts.length) {
+            unknownCounts[line] = grid.countUnknown(line);
+            line++;
+        }
+
+        long[] keys = new long[spiralCells.length];
+        int keyCount = 0;
+        int position = 0;
+        while (position < spiralCells.length) {
+            int row = spiralCells[position] / numCols;
+            int col = spiralCells[position] % numCols;
+            if (grid.get(row, col) == EMPTY_CELL) {
+                keys[keyCount++] = (long) (unknownCounts[grid.rowLine(row)] + unknownCounts[grid.colLine(col)]) << 32 | position;
+            }
+            position++;
+        }
+        Arrays.sort(keys, 0, keyCount);
+
+        int[] cells = new int[keyCount];
+        int index = 0;
+        while (index < keyCount) {
+            cells[index] = spiralCells[(int) keys[index]];
+            index++;
+        }
+        return cells;
+    }
+
+    // every cell once, in spiral order, with which of them the spiral focuses the column numbers for
+    private void findSpiralCells() {
+        spiralCells = new int[numRows * numCols];
+        spiralFocusesCols = new BitSet(numRows * numCols);
+        BitSet seen = new BitSet(numRows * numCols);
+        int cellCount = 0;
+        for (int[] cell : spiralOrder()) {
+            int index = cell[0] * numCols + cell[1];
+            if (!seen.get(index)) {
+                seen.set(index);
+                spiralCells[cellCount++] = index;
+                if (cell[2] == 1) {
+                    spiralFocusesCols.set(index);
+                }
+            }
+        }
+        // a single row or column has no spiral, and neither does the one cell left in the middle of some grids
+        int index = 0;
+        while (index < numRows * numCols) {
+            if (!seen.get(index)) {
+                spiralCells[cellCount++] = index;
+            }
+            index++;
+        }
+    }
+
+    // each cell is given as {row, col, 1 if the column numbers should be focused}
+    private ArrayList<int[]> spiralOrder() {
         //trying cells in spiral pattern because outermost are most likely to cause contradictions
+        ArrayList<int[]> cells = new ArrayList<>();
         int rowMin = 0;
         int rowMax = numRows - 1;
         int colMin = 0;
@@ -115,136 +439,396 @@ public class PicrossSolver {
         int col = colMin;
         while (rowMin < rowMax || colMin < colMax) {
             while (row < rowMax) {
-                if (couldFindContradiction(row, col, false)) {
-                    return true;
-                }
+                cells.add(new int[] {row, col, 0});
                 row++;
             }
             rowMax--;
 
             while (col < colMax) {
-                if (couldFindContradiction(row, col, true)) {
-                    return true;
-                }
+                cells.add(new int[] {row, col, 1});
                 col++;
             }
             colMax--;
 
             while (row > rowMin) {
-                if (couldFindContradiction(row, col, false)) {
-                    return true;
-                }
+                cells.add(new int[] {row, col, 0});
                 row--;
             }
             rowMin++;
 
             while (col > colMin) {
-                if (couldFindContradiction(row, col, true)) {
-                    return true;
-                }
+                cells.add(new int[] {row, col, 1});
                 col--;
             }
             colMin++;
         }
 
+        return cells;
+    }
+
+    // probes a batch of unknown cells with both values at once and applies every contradiction found in the batch together
+    private boolean runParallelProbingRound() {
+        ArrayList<int[]> candidates = new ArrayList<>();
+        boolean[][] isCandidate = new boolean[numRows][numCols];
+        for (int[] cell : spiralOrder()) {
+            if (grid.get(cell[0], cell[1]) == EMPTY_CELL && !isCandidate[cell[0]][cell[1]]) {
+                isCandidate[cell[0]][cell[1]] = true;
+                candidates.add(cell);
+            }
+        }
+
+        int batchSize = probingPool.getParallelism() * PROBES_PER_WORKER;
+        int batchStart = 0;
+        while (batchStart < candidates.size()) {
+            List<int[]> batch = candidates.subList(batchStart, Math.min(batchStart + batchSize, candidates.size()));
+            PicrossSolver[] probes = awaitProbes(probingPool.submit(() -> IntStream.range(0, 2 * batch.size())
+                                                                                   .parallel()
+                                                                                   .mapToObj(index -> probe(batch.get(index / 2), index % 2 == 0 ? FILLED_CELL : CROSSED_CELL))
+                                                                                   .toArray(PicrossSolver[]::new)));
+
+            boolean foundContradiction = false;
+            int index = 0;
+            while (index < batch.size()) {
+                int[] cell = batch.get(index);
+                PicrossSolver solverWithFill = probes[2 * index];
+                PicrossSolver solverWithCross = probes[2 * index + 1];
+                countLineSolves(solverWithFill.lineSolveCount + solverWithCross.lineSolveCount);
+
+                if (solverWithFill.impossible && solverWithCross.impossible) {
+                    if (SolverTrace.isEnabled(SolverTrace.Subsystem.PROBING)) {
+                        SolverTrace.event(SolverTrace.Subsystem.PROBING, "neitherValueFits", "row", cell[0], "col", cell[1]);
+                    }
+                    impossible = true;
+                    return false;
+                } else if (solverWithFill.impossible) {
+                    setGuessedCell(cell[0], cell[1], CROSSED_CELL, cell[2] == 1);
+                    foundContradiction = true;
+                } else if (solverWithCross.impossible) {
+                    setGuessedCell(cell[0], cell[1], FILLED_CELL, cell[2] == 1);
+                    foundContradiction = true;
+                }
+                index++;
+            }
+            if (foundContradiction) {
+                return true;
+            }
+            batchStart += batchSize;
+        }
+
         return false;
     }
 
-    private boolean couldFindContradiction(int row, int col, boolean focusColNums) {
-        if (intGrid[row][col] != PicrossSolver.EMPTY_CELL) {
+    // waits for a batch of probes so that an interrupt is noticed, and then has the probes stop at their next line solve
+    // and waits for them to, so that nothing of a cancelled solve is left running on the pool
+    private PicrossSolver[] awaitProbes(ForkJoinTask<PicrossSolver[]> probes) {
+        try {
+            return probes.get();
+        } catch (InterruptedException e) {
+            cancelled.set(true);
+            probes.quietlyJoin();
+            cancelled.set(false);
+            Thread.currentThread().interrupt();
+            throw new SolverCancelledException("Stopped during a round of probes after " + lineSolveCount + " line solves");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    private PicrossSolver probe(int[] cell, int value) {
+        // the rest of a cancelled batch is not even copied
+        if (cancelled.get()) {
+            throw new SolverCancelledException("Stopped before probing row " + cell[0] + " column " + cell[1]);
+        }
+        var solver = new PicrossSolver(this, cell[0], cell[1], value);
+        solver.solve();
+        return solver;
+    }
+
+    // for propagation rules: a probe of one value of a cell whose propagation stays within the given limits
+    protected PicrossSolver probeNear(int row, int col, int value, int maxDepth, int radius, int lineBudget) {
+        var solver = new PicrossSolver(this, row, col, value);
+        solver.probeScope = new ProbeScope(grid, row, col, maxDepth, radius, lineBudget);
+        solver.solve();
+        countLineSolves(solver.lineSolveCount);
+        return solver;
+    }
+
+    // for propagation rules, to set a cell they have proved
+    protected void deduce(int row, int col, int value) {
+        setGuessedCell(row, col, value, false);
+    }
+
+    // for propagation rules, whether the row or column of a cell has changed since the rule last ran and so whether
+    // trying the cell again could find anything new
+    protected boolean changedNear(int row, int col) {
+        return lineChangedAt[grid.rowLine(row)] > ruleLastRanAt || lineChangedAt[grid.colLine(col)] > ruleLastRanAt;
+    }
+
+    private void markChanged(int row, int col) {
+        if (lineChangedAt != null) {
+            changeCount++;
+            lineChangedAt[grid.rowLine(row)] = changeCount;
+            lineChangedAt[grid.colLine(col)] = changeCount;
+        }
+    }
+
+    // deduces the cell if one value leads to a contradiction, or else the cells both values agree on, and propagates what
+    // it deduced; when neither value leads to a contradiction, remembers when the cell was probed and what each value
+    // implied. A value some other probe implied since the grid last changed is not tried, and a cell with both values
+    // implied is left alone, which only gives up the cells its two probes would have agreed on.
+    private boolean probeCell(int row, int col, boolean focusColNums) {
+        int cell = row * numCols + col;
+        boolean fillConsistent = consistentAt[2 * cell + 1] == changeCount;
+        boolean crossConsistent = consistentAt[2 * cell] == changeCount;
+        if (fillConsistent && crossConsistent) {
             return false;
         }
 
-        var solverWithFill = new PicrossSolver(intGrid, row, col, PicrossSolver.FILLED_CELL, rowHeaders, colHeaders);
-        solverWithFill.solve();
-        if (solverWithFill.impossible) {
-            intGrid[row][col] = PicrossSolver.CROSSED_CELL;
-            solutionDisplaySteps.add(new SolutionDisplayStep(row, col, PicrossSolver.CROSSED_CELL, focusColNums));
-            return true;
+        PicrossSolver solverWithFill = null;
+        if (!fillConsistent) {
+            solverWithFill = new PicrossSolver(this, row, col, FILLED_CELL);
+            solverWithFill.solve();
+            countLineSolves(solverWithFill.lineSolveCount);
+            if (solverWithFill.impossible) {
+                setGuessedCell(row, col, CROSSED_CELL, focusColNums);
+                solve();
+                return true;
+            }
         }
 
-        var solverWithCross = new PicrossSolver(intGrid, row, col, PicrossSolver.CROSSED_CELL, rowHeaders, colHeaders);
-        solverWithCross.solve();
-        if (solverWithCross.impossible) {
-            intGrid[row][col] = PicrossSolver.FILLED_CELL;
-            solutionDisplaySteps.add(new SolutionDisplayStep(row, col, PicrossSolver.FILLED_CELL, focusColNums));
+        PicrossSolver solverWithCross = null;
+        if (!crossConsistent) {
+            solverWithCross = new PicrossSolver(this, row, col, CROSSED_CELL);
+            solverWithCross.solve();
+            countLineSolves(solverWithCross.lineSolveCount);
+            if (solverWithCross.impossible) {
+                setGuessedCell(row, col, FILLED_CELL, focusColNums);
+                solve();
+                return true;
+            }
+        }
+
+        probedAt[cell] = changeCount;
+        impliedByFill[cell] = solverWithFill != null ? implicationsOf(solverWithFill) : new int[0];
+        impliedByCross[cell] = solverWithCross != null ? implicationsOf(solverWithCross) : new int[0];
+        if (solverWithFill != null && solverWithCross != null && deduceAgreed(solverWithFill, solverWithCross) > 0) {
+            solve();
             return true;
         }
+        return false;
+    }
+
+    // up to MAX_REMEMBERED_IMPLICATIONS of the cells probe knows that this solver does not, each as twice its index plus
+    // 1 if filled; any of them is enough to rule the probed value out once the grid contradicts it. Every one of them,
+    // remembered or not, is marked in consistentAt.
+    private int[] implicationsOf(PicrossSolver probe) {
+        int[] implications = new int[MAX_REMEMBERED_IMPLICATIONS];
+        int implicationCount = 0;
+        int row = 0;
+        while (row < numRows) {
+            long[] knownFilled = grid.knownFilled(row);
+            long[] knownCrossed = grid.knownCrossed(row);
+            long[] probeFilled = probe.grid.knownFilled(row);
+            long[] probeCrossed = probe.grid.knownCrossed(row);
+            int word = 0;
+            while (word < knownFilled.length) {
+                long newlyFilled = probeFilled[word] & ~knownFilled[word];
+                long newlyKnown = newlyFilled | (probeCrossed[word] & ~knownCrossed[word]);
+                while (newlyKnown != 0) {
+                    int bit = Long.numberOfTrailingZeros(newlyKnown);
+                    int implication = 2 * (row * numCols + (word << 6) + bit) + ((newlyFilled & (1L << bit)) != 0 ? 1 : 0);
+                    consistentAt[implication] = changeCount;
+                    if (implicationCount < implications.length) {
+                        implications[implicationCount++] = implication;
+                    }
+                    newlyKnown &= newlyKnown - 1;
+                }
+                word++;
+            }
+            row++;
+        }
+        return Arrays.copyOf(implications, implicationCount);
+    }
 
+    // the value of the cell that something it implied when last probed now contradicts, or EMPTY_CELL if neither
+    private int valueRuledOutByImplications(int cell) {
+        if (contradictsGrid(impliedByFill[cell])) {
+            return FILLED_CELL;
+        } else if (contradictsGrid(impliedByCross[cell])) {
+            return CROSSED_CELL;
+        }
+        return EMPTY_CELL;
+    }
+
+    private boolean contradictsGrid(int[] implications) {
+        for (int implication : implications) {
+            int value = grid.get(implication / 2 / numCols, implication / 2 % numCols);
+            if (value != EMPTY_CELL && value != (implication % 2 == 1 ? FILLED_CELL : CROSSED_CELL)) {
+                return true;
+            }
+        }
         return false;
     }
-	
-	private boolean[] updateRow(int row) throws RuntimeException {
-        debug("Try to update row " + row);
-        int[] line = intGrid[row].clone(); //clone() is ok because these are primitives
-        int[] newLine = PicrossLineSolver.tryToSolveLine(line, rowHeaders[row]);
 
-        boolean[] colsToUpdate = new boolean[numCols];
-        IntStream.range(0, numCols)
-                 .iterator()
-                 .forEachRemaining((IntConsumer) col -> updateCell(row, col, col, line, newLine, colsToUpdate, false));
+    // sets every cell that two probes of the same cell, one with each value, both know and agree on, and returns how many
+    protected int deduceAgreed(PicrossSolver solverWithFill, PicrossSolver solverWithCross) {
+        int deducedCount = 0;
+        int row = 0;
+        while (row < numRows) {
+            long[] knownFilled = grid.knownFilled(row);
+            long[] knownCrossed = grid.knownCrossed(row);
+            long[] filledWithFill = solverWithFill.grid.knownFilled(row);
+            long[] filledWithCross = solverWithCross.grid.knownFilled(row);
+            long[] crossedWithFill = solverWithFill.grid.knownCrossed(row);
+            long[] crossedWithCross = solverWithCross.grid.knownCrossed(row);
+            int word = 0;
+            while (word < knownFilled.length) {
+                long agreedFilled = filledWithFill[word] & filledWithCross[word] & ~knownFilled[word];
+                long agreed = agreedFilled | (crossedWithFill[word] & crossedWithCross[word] & ~knownCrossed[word]);
+                while (agreed != 0) {
+                    int bit = Long.numberOfTrailingZeros(agreed);
+                    setGuessedCell(row, (word << 6) + bit, (agreedFilled & (1L << bit)) != 0 ? FILLED_CELL : CROSSED_CELL, false);
+                    deducedCount++;
+                    agreed &= agreed - 1;
+                }
+                word++;
+            }
+            row++;
+        }
+        return deducedCount;
+    }
 
-        return colsToUpdate;
-	}
+    private void setGuessedCell(int row, int col, int value, boolean focusColNums) {
+        if (SolverTrace.isEnabled(SolverTrace.Subsystem.PROBING)) {
+            SolverTrace.event(SolverTrace.Subsystem.PROBING, "deduced", "row", row, "col", col, "value", value);
+        }
+        grid.set(row, col, value);
+        markChanged(row, col);
+        worklist.add(grid.rowLine(row));
+        worklist.add(grid.colLine(col));
+        stepGroup++;
+        stepSink.add(row, col, value, focusColNums, stepGroup);
+    }
 	
-	private boolean[] updateCol(int col) throws RuntimeException {
-        debug("Try to update column " + col);
-        int[] line = IntStream.range(0, numRows)
-                              .map(row -> intGrid[row][col])
-                              .toArray();
-        int[] newLine = PicrossLineSolver.tryToSolveLine(line, colHeaders[col]);
-
-        boolean[] rowsToUpdate = new boolean[numRows];
-        IntStream.range(0, numRows)
-                 .iterator()
-                 .forEachRemaining((IntConsumer) row -> updateCell(row, col, row, line, newLine, rowsToUpdate, true));
-            
-        return rowsToUpdate;
-	}
+    private void updateLine(int line) throws RuntimeException {
+        applySolvedLine(line, lineSolutionCache.tryToSolveLine(lineSolverEngine, grid, line, numsFor(line), metrics));
+    }
 
-    private void updateCell(int row, int col, int index, int[] line, int[] newLine, boolean[] toUpdate, boolean focusColNums) {
-        if (newLine[index] == line[index]) {
-            return;
-        }
+    // compares the solved line against what is known a word at a time and only visits cells that changed
+    private void applySolvedLine(int line, LineSolutionCache.SolvedLine solvedLine) throws RuntimeException {
+        long[] knownFilled = grid.knownFilled(line);
+        long[] knownCrossed = grid.knownCrossed(line);
+        stepGroup++;
+
+        int word = 0;
+        while (word < knownFilled.length) {
+            if ((solvedLine.filled[word] & knownCrossed[word]) != 0 || (solvedLine.crossed[word] & knownFilled[word]) != 0) {
+                throw new IllegalStateException("Throwing exception. Tried to overwrite a cell of line " + line);
+            }
 
-        if (line[index] != EMPTY_CELL) {
-            throw new IllegalStateException("Throwing exception. Tried to overwrite cell " + index);
+            long newlyFilled = solvedLine.filled[word] & ~knownFilled[word];
+            long newlyKnown = newlyFilled | (solvedLine.crossed[word] & ~knownCrossed[word]);
+            while (newlyKnown != 0) {
+                int bit = Long.numberOfTrailingZeros(newlyKnown);
+                int index = (word << 6) + bit;
+                updateCell(grid.rowOf(line, index), grid.colOf(line, index), index, (newlyFilled & (1L << bit)) != 0 ? FILLED_CELL : CROSSED_CELL, line);
+                newlyKnown &= newlyKnown - 1;
+            }
+            word++;
         }
+    }
 
-        if (solution.isPresent() && ((newLine[index] == CROSSED_CELL && solution.get()[row][col] != CROSSED_CELL) || (newLine[index] == FILLED_CELL && solution.get()[row][col] != FILLED_CELL))) {
-            throw new IllegalStateException("Throwing exception. Got cell " + index + " wrong. Line: " + Arrays.toString(line));
+    private void updateCell(int row, int col, int index, int newState, int line) {
+        if (solution.isPresent() && solution.get()[row][col] != newState) {
+            throw new IllegalStateException("Throwing exception. Got cell " + index + " wrong at row " + row + " and column " + col);
+        }
+        boolean focusColNums = grid.isColumn(line);
+        grid.set(row, col, newState, line);
+        markChanged(row, col);
+        int crossingLine = focusColNums ? grid.rowLine(row) : grid.colLine(col);
+        if (probeScope != null) {
+            probeScope.reached(crossingLine, line);
         }
-        intGrid[row][col] = newLine[index];
-        toUpdate[index] = true;
-        foundInformation = true;
-        
-        solutionDisplaySteps.add(new SolutionDisplayStep(row, col, newLine[index], focusColNums));
+        worklist.add(crossingLine);
+        stepSink.add(row, col, newState, focusColNums, stepGroup);
+    }
+
+    // The methods below let PicrossSearch branch on cells of this solver and take the branches back again.
+    protected PackedGrid getGrid() {
+        return grid;
+    }
+
+    protected int[][] getRowHeaders() {
+        return rowHeaders;
+    }
+
+    protected int[][] getColHeaders() {
+        return colHeaders;
     }
 
-    private void updateRowDoPerpendicularJumps(int row) throws RuntimeException {
-        var colsToUpdate = updateRow(row);
+    protected boolean isImpossible() {
+        return impossible;
+    }
 
-        debug("Will update cols due to changes on row " + row + ": " + Arrays.toString(colsToUpdate));
-        IntStream.range(0, numCols)
-                 .filter(col -> colsToUpdate[col])
-                 .iterator()
-                 .forEachRemaining((IntConsumer) this::updateColDoPerpendicularJumps);
+    // the line that was being solved when propagation last ran into a contradiction, or -1 if it is not known
+    protected int getConflictLine() {
+        return conflictLine;
     }
 
-    private void updateColDoPerpendicularJumps(int col) throws RuntimeException {
-        boolean[] rowsToUpdate = updateCol(col);
+    protected boolean propagateAll() {
+        solve();
+        return !impossible;
+    }
 
-        debug("Will update rows due to changes on column " + col + ": " + Arrays.toString(rowsToUpdate));
-        IntStream.range(0, numRows)
-                 .filter(row -> rowsToUpdate[row])
-                 .iterator()
-                 .forEachRemaining((IntConsumer) this::updateRowDoPerpendicularJumps);
+    protected boolean assume(int row, int col, int value) {
+        grid.set(row, col, value, PackedGrid.DECISION);
+        worklist.add(grid.rowLine(row));
+        worklist.add(grid.colLine(col));
+        solve();
+        return !impossible;
     }
 
-    protected static void debug(String message) {
-        if (inDebugMode) {
-            System.out.println(message);
+    protected void undoTo(int trailMark) {
+        grid.undoTo(trailMark);
+        worklist.clear();
+        impossible = false;
+    }
+
+    // For IncrementalSolver, after the clue of line has changed. Each deduction on the trail used only the clue of the
+    // line that made it and the cells of that line known before it, so a deduction can have depended on the changed
+    // clue only if line made it, or if its line already held such a deduction when it was made. Those are taken back,
+    // the rest stay, and the lines that lost cells are queued again along with line itself.
+    protected void retractDeductionsOf(int line) {
+        boolean[] lineDepends = new boolean[grid.lineCount()];
+        BitSet retracted = new BitSet();
+        int position = 0;
+        while (position < grid.trailSize()) {
+            int reason = grid.trailReason(position);
+            if (reason == line || (reason != PackedGrid.DECISION && lineDepends[reason])) {
+                int cell = grid.trailCell(position);
+                lineDepends[grid.rowLine(cell / numCols)] = true;
+                lineDepends[grid.colLine(cell % numCols)] = true;
+                worklist.add(grid.rowLine(cell / numCols));
+                worklist.add(grid.colLine(cell % numCols));
+                retracted.set(position);
+            }
+            position++;
         }
+        grid.undo(retracted);
+        worklist.add(line);
+        if (impossible) {
+            // the contradiction cleared the queue before every line was solved
+            requeueAllLines();
+        }
+    }
+
+    // for when propagation stopped partway, such as when it was cancelled, and which lines still need solving is lost
+    protected void requeueAllLines() {
+        worklist.addAll();
+        impossible = false;
     }
 
     public static void maybeRunTests() {
@@ -252,112 +836,118 @@ public class PicrossSolver {
             return;
         }
 
+        boolean noFailure = true;
+        for (LineSolverEngine engine : LineSolverEngine.values()) {
+            noFailure = runLineTests(engine) && noFailure;
+        }
+        if (noFailure) {
+            System.out.println("\nAll test cases pass!");
+        }
+    }
+
+    private static boolean runLineTests(LineSolverEngine engine) {
         int index = 1;
         boolean noFailure = true;
         for (String testResult : new String[] {
-            test(index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {0},               new int[] {0,0,0,0,0, 0,0,0,0,0, 0,0,0,0,0}),
-            test(index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {15},              new int[] {1,1,1,1,1, 1,1,1,1,1, 1,1,1,1,1}),
-            test(index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {1,1,1,1,1,1,1,1}, new int[] {1,0,1,0,1, 0,1,0,1,0, 1,0,1,0,1}),
-            test(index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {7},               new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}),
-            test(index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {8},               new int[] {2,2,2,2,2, 2,2,1,2,2, 2,2,2,2,2}),
-
-            test(index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {10},              new int[] {2,2,2,2,2, 1,1,1,1,1, 2,2,2,2,2}),
-            test(index++, new int[] {2,1,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {10},              new int[] {2,1,1,1,1, 1,1,1,1,1, 2,0,0,0,0}),
-            test(index++, new int[] {2,2,1,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {5},               new int[] {2,2,1,1,1, 2,2,0,0,0, 0,0,0,0,0}),
-            test(index++, new int[] {2,2,1,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {5,1},             new int[] {2,2,1,1,1, 2,2,2,2,2, 2,2,2,2,2}),
-            test(index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {5,5},             new int[] {2,2,2,2,1, 2,2,2,2,2, 1,2,2,2,2}), //10
-
-            test(index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {4,4,4},           new int[] {2,1,1,1,2, 2,1,1,1,2, 2,1,1,1,2}),
-            test(index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {3,6,4},           new int[] {1,1,1,0,1, 1,1,1,1,1, 0,1,1,1,1}),
-            test(index++, new int[] {2,2,1,2,2, 2,1,2,2,2, 2,1,2,2,2}, new int[] {3,6,4},           new int[] {1,1,1,0,1, 1,1,1,1,1, 0,1,1,1,1}),
-            test(index++, new int[] {2,2,2,2,0, 2,2,2,2,2, 2,2,2,2,2}, new int[] {8},               new int[] {0,0,0,0,0, 2,2,1,1,1, 1,1,1,2,2}),
-            test(index++, new int[] {2,2,2,2,0, 2,2,2,2,2, 2,2,2,2,2}, new int[] {5},               new int[] {0,0,0,0,0, 2,2,2,2,2, 2,2,2,2,2}),
-
-            test(index++, new int[] {2,2,0,2,2, 0,2,2,0,2, 2,0,2,2,2}, new int[] {2,2,1,2},         new int[] {2,2,0,2,2, 0,2,2,0,2, 2,0,2,2,2}),
-            test(index++, new int[] {2,2,0,2,2, 0,2,2,0,2, 2,0,2,2,2}, new int[] {2,2,1,3},         new int[] {2,2,0,2,2, 0,2,2,0,2, 2,0,1,1,1}),
-            test(index++, new int[] {2,2,0,2,2, 0,2,2,0,2, 2,0,2,2,2}, new int[] {2,2,1,2,2},       new int[] {1,1,0,1,1, 0,2,2,0,1, 1,0,2,1,2}),
-            test(index++, new int[] {2,2,2,2,2, 0,2,2,2,2, 2,2,2,2,2}, new int[] {3,5},             new int[] {2,2,2,2,2, 0,2,2,2,2, 1,2,2,2,2}),
-            test(index++, new int[] {2,2,2,2,2, 2,2,0,2,2, 2,2,2,2,2}, new int[] {7},               new int[] {2,2,2,2,2, 2,2,0,2,2, 2,2,2,2,2}), //20
-
-            test(index++, new int[] {2,2,2,2,2, 2,2,0,2,2, 2,1,2,2,2}, new int[] {7},               new int[] {0,0,0,0,0, 0,0,0,1,1, 1,1,1,1,1}),
-            test(index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {1,1,1,1,1,1,1},   new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}),
-            test(index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,1,2}, new int[] {1,1,1,1,1,1,1},   new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,0,1,0}),
-            test(index++, new int[] {0,2,2,2,2, 2,2,2,2,2, 2,2,2,2,0}, new int[] {1,1,1,1,1,1,1},   new int[] {0,1,0,1,0, 1,0,1,0,1, 0,1,0,1,0}),
-            test(index++, new int[] {2,2,2,2,2, 0,1,2,2,2, 2,2,2,2,2}, new int[] {3,4},             new int[] {2,2,2,2,2, 0,1,1,1,2, 2,2,2,2,2}),
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {0},               new int[] {0,0,0,0,0, 0,0,0,0,0, 0,0,0,0,0}),
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {15},              new int[] {1,1,1,1,1, 1,1,1,1,1, 1,1,1,1,1}),
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {1,1,1,1,1,1,1,1}, new int[] {1,0,1,0,1, 0,1,0,1,0, 1,0,1,0,1}),
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {7},               new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}),
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {8},               new int[] {2,2,2,2,2, 2,2,1,2,2, 2,2,2,2,2}),
+
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {10},              new int[] {2,2,2,2,2, 1,1,1,1,1, 2,2,2,2,2}),
+            test(engine, index++, new int[] {2,1,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {10},              new int[] {2,1,1,1,1, 1,1,1,1,1, 2,0,0,0,0}),
+            test(engine, index++, new int[] {2,2,1,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {5},               new int[] {2,2,1,1,1, 2,2,0,0,0, 0,0,0,0,0}),
+            test(engine, index++, new int[] {2,2,1,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {5,1},             new int[] {2,2,1,1,1, 2,2,2,2,2, 2,2,2,2,2}),
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {5,5},             new int[] {2,2,2,2,1, 2,2,2,2,2, 1,2,2,2,2}), //10
+
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {4,4,4},           new int[] {2,1,1,1,2, 2,1,1,1,2, 2,1,1,1,2}),
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {3,6,4},           new int[] {1,1,1,0,1, 1,1,1,1,1, 0,1,1,1,1}),
+            test(engine, index++, new int[] {2,2,1,2,2, 2,1,2,2,2, 2,1,2,2,2}, new int[] {3,6,4},           new int[] {1,1,1,0,1, 1,1,1,1,1, 0,1,1,1,1}),
+            test(engine, index++, new int[] {2,2,2,2,0, 2,2,2,2,2, 2,2,2,2,2}, new int[] {8},               new int[] {0,0,0,0,0, 2,2,1,1,1, 1,1,1,2,2}),
+            test(engine, index++, new int[] {2,2,2,2,0, 2,2,2,2,2, 2,2,2,2,2}, new int[] {5},               new int[] {0,0,0,0,0, 2,2,2,2,2, 2,2,2,2,2}),
+
+            test(engine, index++, new int[] {2,2,0,2,2, 0,2,2,0,2, 2,0,2,2,2}, new int[] {2,2,1,2},         new int[] {2,2,0,2,2, 0,2,2,0,2, 2,0,2,2,2}),
+            test(engine, index++, new int[] {2,2,0,2,2, 0,2,2,0,2, 2,0,2,2,2}, new int[] {2,2,1,3},         new int[] {2,2,0,2,2, 0,2,2,0,2, 2,0,1,1,1}),
+            test(engine, index++, new int[] {2,2,0,2,2, 0,2,2,0,2, 2,0,2,2,2}, new int[] {2,2,1,2,2},       new int[] {1,1,0,1,1, 0,2,2,0,1, 1,0,2,1,2}),
+            test(engine, index++, new int[] {2,2,2,2,2, 0,2,2,2,2, 2,2,2,2,2}, new int[] {3,5},             new int[] {2,2,2,2,2, 0,2,2,2,2, 1,2,2,2,2}),
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,0,2,2, 2,2,2,2,2}, new int[] {7},               new int[] {2,2,2,2,2, 2,2,0,2,2, 2,2,2,2,2}), //20
+
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,0,2,2, 2,1,2,2,2}, new int[] {7},               new int[] {0,0,0,0,0, 0,0,0,1,1, 1,1,1,1,1}),
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {1,1,1,1,1,1,1},   new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}),
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,1,2}, new int[] {1,1,1,1,1,1,1},   new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,0,1,0}),
+            test(engine, index++, new int[] {0,2,2,2,2, 2,2,2,2,2, 2,2,2,2,0}, new int[] {1,1,1,1,1,1,1},   new int[] {0,1,0,1,0, 1,0,1,0,1, 0,1,0,1,0}),
+            test(engine, index++, new int[] {2,2,2,2,2, 0,1,2,2,2, 2,2,2,2,2}, new int[] {3,4},             new int[] {2,2,2,2,2, 0,1,1,1,2, 2,2,2,2,2}),
             
-            test(index++, new int[] {1,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {4,1},             new int[] {1,1,1,1,0, 2,2,2,2,2, 2,2,2,2,2}),
-            test(index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,1}, new int[] {1,4},             new int[] {2,2,2,2,2, 2,2,2,2,2, 0,1,1,1,1}),
-            test(index++, new int[] {2,2,2,2,2, 2,2,2,0,1, 0,2,2,2,2}, new int[] {1,3},             new int[] {0,0,0,0,0, 0,0,0,0,1, 0,2,1,1,2}),
-            test(index++, new int[] {2,2,2,2,2, 2,2,2,2,1, 1,1,2,2,2}, new int[] {5,2},             new int[] {0,0,0,0,0, 0,0,1,1,1, 1,1,0,1,1}),
-            test(index++, new int[] {2,2,2,2,2, 2,2,1,1,2, 2,2,2,2,2}, new int[] {1,5,1},           new int[] {2,2,2,2,2, 2,2,1,1,2, 2,2,2,2,2}), //30
+            test(engine, index++, new int[] {1,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {4,1},             new int[] {1,1,1,1,0, 2,2,2,2,2, 2,2,2,2,2}),
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,1}, new int[] {1,4},             new int[] {2,2,2,2,2, 2,2,2,2,2, 0,1,1,1,1}),
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,2,0,1, 0,2,2,2,2}, new int[] {1,3},             new int[] {0,0,0,0,0, 0,0,0,0,1, 0,2,1,1,2}),
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,2,2,1, 1,1,2,2,2}, new int[] {5,2},             new int[] {0,0,0,0,0, 0,0,1,1,1, 1,1,0,1,1}),
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,1,1,2, 2,2,2,2,2}, new int[] {1,5,1},           new int[] {2,2,2,2,2, 2,2,1,1,2, 2,2,2,2,2}), //30
             
-            test(index++, new int[] {2,2,2,2,2, 1,2,2,2,2, 2,2,2,2,2}, new int[] {5,3},             new int[] {0,2,2,2,2, 1,2,2,2,2, 2,2,2,2,2}),
-            test(index++, new int[] {2,2,2,2,0, 1,2,2,2,2, 2,2,2,2,2}, new int[] {3,3},             new int[] {2,2,2,2,0, 1,1,1,0,2, 2,2,2,2,2}),
-            test(index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 0,1,2,2,2}, new int[] {3,3},             new int[] {2,2,2,2,2, 2,2,2,2,2, 0,1,1,1,0}),
-            test(index++, new int[] {0,1,1,1,0, 2,2,1,2,2, 2,2,1,2,2}, new int[] {3,3,3},           new int[] {0,1,1,1,0, 2,2,1,2,2, 2,2,1,2,2}),
-            test(index++, new int[] {0,1,1,1,0, 2,2,2,2,2, 2,2,2,2,2}, new int[] {3,3,3},           new int[] {0,1,1,1,0, 2,2,2,2,2, 2,2,2,2,2}),
+            test(engine, index++, new int[] {2,2,2,2,2, 1,2,2,2,2, 2,2,2,2,2}, new int[] {5,3},             new int[] {0,2,2,2,2, 1,2,2,2,2, 2,2,2,2,2}),
+            test(engine, index++, new int[] {2,2,2,2,0, 1,2,2,2,2, 2,2,2,2,2}, new int[] {3,3},             new int[] {2,2,2,2,0, 1,1,1,0,2, 2,2,2,2,2}),
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 0,1,2,2,2}, new int[] {3,3},             new int[] {2,2,2,2,2, 2,2,2,2,2, 0,1,1,1,0}),
+            test(engine, index++, new int[] {0,1,1,1,0, 2,2,1,2,2, 2,2,1,2,2}, new int[] {3,3,3},           new int[] {0,1,1,1,0, 2,2,1,2,2, 2,2,1,2,2}),
+            test(engine, index++, new int[] {0,1,1,1,0, 2,2,2,2,2, 2,2,2,2,2}, new int[] {3,3,3},           new int[] {0,1,1,1,0, 2,2,2,2,2, 2,2,2,2,2}),
             
-            test(index++, new int[] {2,2,2,2,2, 1,2,2,2,2, 2,2,2,2,2}, new int[] {5},               new int[] {0,2,2,2,2, 1,2,2,2,2, 0,0,0,0,0}),
-            test(index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {1},               new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}),
-            test(index++, new int[] {2,2,0,2,2, 0,0,2,2,2, 0,2,0,2,2}, new int[] {3,1},             new int[] {0,0,0,0,0, 0,0,1,1,1, 0,2,0,2,2}),
-            test(index++, new int[] {2,2,1,1,1, 2,2,2,2,2, 1,1,2,2,2}, new int[] {1,3,4},           new int[] {1,0,1,1,1, 0,0,0,2,2, 1,1,2,2,0}),
-            test(index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {14},              new int[] {2,1,1,1,1, 1,1,1,1,1, 1,1,1,1,2}), //40
-
-            test(index++, new int[] {0,2,2,2,2, 2,2,2,1,2, 2,2,2,2,0}, new int[] {1,4,1},           new int[] {0,2,2,2,2, 2,2,2,1,2, 2,2,2,2,0}),
-            test(index++, new int[] {0,2,2,2,2, 2,2,1,0,2, 2,2,2,2,0}, new int[] {1,2,1,1,1},       new int[] {0,2,2,2,2, 2,2,1,0,2, 2,2,2,2,0}),
-            test(index++, new int[] {0,2,2,2,2, 1,2,2,2,1, 0,2,2,2,0}, new int[] {1,2,3,1},         new int[] {0,2,2,0,1, 1,0,1,1,1, 0,2,2,2,0}),
-            test(index++, new int[] {2,2,2,1,1, 1,2,2,2,2, 1,1,2,2,2}, new int[] {1,3,4},           new int[] {2,2,0,1,1, 1,0,0,2,2, 1,1,2,2,0}),
-            test(index++, new int[] {2,2,2,2,0, 0,2,2,1,2, 2,2,2,2,2, 1,2,2,2,2}, new int[] {4,1,2,5},    new int[] {1,1,1,1,0, 0,2,0,1,2, 2,2,2,2,2, 1,2,2,2,2}),
-
-            test(index++, new int[] {1,1,1,1,0, 2,2,2,2,2, 2,1,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {4,5,3}, 
+            test(engine, index++, new int[] {2,2,2,2,2, 1,2,2,2,2, 2,2,2,2,2}, new int[] {5},               new int[] {0,2,2,2,2, 1,2,2,2,2, 0,0,0,0,0}),
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {1},               new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}),
+            test(engine, index++, new int[] {2,2,0,2,2, 0,0,2,2,2, 0,2,0,2,2}, new int[] {3,1},             new int[] {0,0,0,0,0, 0,0,1,1,1, 0,2,0,2,2}),
+            test(engine, index++, new int[] {2,2,1,1,1, 2,2,2,2,2, 1,1,2,2,2}, new int[] {1,3,4},           new int[] {1,0,1,1,1, 0,0,0,2,2, 1,1,2,2,0}),
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {14},              new int[] {2,1,1,1,1, 1,1,1,1,1, 1,1,1,1,2}), //40
+
+            test(engine, index++, new int[] {0,2,2,2,2, 2,2,2,1,2, 2,2,2,2,0}, new int[] {1,4,1},           new int[] {0,2,2,2,2, 2,2,2,1,2, 2,2,2,2,0}),
+            test(engine, index++, new int[] {0,2,2,2,2, 2,2,1,0,2, 2,2,2,2,0}, new int[] {1,2,1,1,1},       new int[] {0,2,2,2,2, 2,2,1,0,2, 2,2,2,2,0}),
+            test(engine, index++, new int[] {0,2,2,2,2, 1,2,2,2,1, 0,2,2,2,0}, new int[] {1,2,3,1},         new int[] {0,2,2,0,1, 1,0,1,1,1, 0,2,2,2,0}),
+            test(engine, index++, new int[] {2,2,2,1,1, 1,2,2,2,2, 1,1,2,2,2}, new int[] {1,3,4},           new int[] {2,2,0,1,1, 1,0,0,2,2, 1,1,2,2,0}),
+            test(engine, index++, new int[] {2,2,2,2,0, 0,2,2,1,2, 2,2,2,2,2, 1,2,2,2,2}, new int[] {4,1,2,5},    new int[] {1,1,1,1,0, 0,2,0,1,2, 2,2,2,2,2, 1,2,2,2,2}),
+
+            test(engine, index++, new int[] {1,1,1,1,0, 2,2,2,2,2, 2,1,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {4,5,3}, 
                           new int[] {1,1,1,1,0, 2,2,2,2,2, 2,1,2,2,2, 2,2,2,2,2, 2,2,2,2,2}),
-            test(index++, new int[] {2,2,2,2,1, 1,2,2,2,2, 2,1,1,2,2, 2,2,2,1,1, 1,2,2,2,2}, new int[] {4,1,3,5,3}, 
+            test(engine, index++, new int[] {2,2,2,2,1, 1,2,2,2,2, 2,1,1,2,2, 2,2,2,1,1, 1,2,2,2,2}, new int[] {4,1,3,5,3}, 
                           new int[] {0,0,2,2,1, 1,2,2,2,2, 2,1,1,2,0, 0,1,1,1,1, 1,0,1,1,1}),
-            test(index++, new int[] {2,2,1,2,0, 2,2,2,2,2, 0,2,2,0,2, 2,2,2,0,2, 2,2,2,2,2}, new int[] {2,1,3}, 
+            test(engine, index++, new int[] {2,2,1,2,0, 2,2,2,2,2, 0,2,2,0,2, 2,2,2,0,2, 2,2,2,2,2}, new int[] {2,1,3}, 
                           new int[] {0,2,1,2,0, 2,2,2,2,2, 0,2,2,0,2, 2,2,2,0,2, 2,2,2,2,2}),
-            test(index++, new int[] {1,1,0,0,0, 0,2,1,1,1, 2,2,1,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {2,4,1,1,2,2,1}, 
+            test(engine, index++, new int[] {1,1,0,0,0, 0,2,1,1,1, 2,2,1,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {2,4,1,1,2,2,1}, 
                           new int[] {1,1,0,0,0, 0,2,1,1,1, 2,0,1,0,2, 2,2,2,2,2, 2,2,2,2,2}),
-            test(index++, new int[] {0,0,0,1,2, 2,2,2,2,2, 2,2,2,2,1, 1,0,2,2,2, 2,0,2,2,2}, new int[] {2,2,1,2}, 
+            test(engine, index++, new int[] {0,0,0,1,2, 2,2,2,2,2, 2,2,2,2,1, 1,0,2,2,2, 2,0,2,2,2}, new int[] {2,2,1,2}, 
                           new int[] {0,0,0,1,1, 0,2,2,2,2, 2,2,2,0,1, 1,0,2,2,2, 2,0,2,2,2}), //50
             
-            test(index++, new int[] {0,0,1,1,0, 1,0,0,2,2, 2,2,2,2,1, 2,2,2,0,0}, new int[] {2,1,1,1,1,2},      
+            test(engine, index++, new int[] {0,0,1,1,0, 1,0,0,2,2, 2,2,2,2,1, 2,2,2,0,0}, new int[] {2,1,1,1,1,2},      
                           new int[] {0,0,1,1,0, 1,0,0,2,2, 2,2,2,0,1, 2,2,2,0,0}),
-            test(index++, new int[] {2,2,2,2,2, 2,2,2,2,1, 2,2,1,2,2, 2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {5,1,4,4},      
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,2,2,1, 2,2,1,2,2, 2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}, new int[] {5,1,4,4},      
                           new int[] {2,2,2,2,2, 2,2,2,2,1, 2,2,1,2,2, 2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2, 2,2,2,2,2}),
-            test(index++, new int[] {0,0,0,0,0, 0,0,0,0,0, 0,0,2,2,2, 2,2,2,2,2, 0,0,2,2,2, 0,2,2,2,0, 2,1,2,2,2, 2,0,0,1,0}, new int[] {1,2,1,1,2,1},      
+            test(engine, index++, new int[] {0,0,0,0,0, 0,0,0,0,0, 0,0,2,2,2, 2,2,2,2,2, 0,0,2,2,2, 0,2,2,2,0, 2,1,2,2,2, 2,0,0,1,0}, new int[] {1,2,1,1,2,1},      
                           new int[] {0,0,0,0,0, 0,0,0,0,0, 0,0,2,2,2, 2,2,2,2,2, 0,0,2,2,2, 0,2,2,2,0, 2,1,2,2,2, 2,0,0,1,0}),
-            test(index++, new int[] {2,2,2,2,2, 2,2,2,1,2, 2,2,2,2,2, 2,2,1,2,2, 0,1,0,2,1}, new int[] {2,2,1,1,2}, 
+            test(engine, index++, new int[] {2,2,2,2,2, 2,2,2,1,2, 2,2,2,2,2, 2,2,1,2,2, 0,1,0,2,1}, new int[] {2,2,1,1,2}, 
                           new int[] {2,2,2,2,2, 2,2,2,1,2, 2,2,2,2,2, 2,2,1,0,2, 0,1,0,1,1}),
 
-            test(index++, new int[] {0,1,0,1,1, 0,0,1,1,1, 0,2,2,0,0, 1,1,0,0,1}, new int[] {1,2,3,2,1}, new int[] {0,1,0,1,1, 0,0,1,1,1, 0,0,0,0,0, 1,1,0,0,1}),
-            exceptionTest(index++, new int[] {2,1,2,1,2}, new int[] {1}, new int[] {}),
-            exceptionTest(index++, new int[] {0,1,0,1,0}, new int[] {1}, new int[] {}),
-            test(index++, new int[] {1,2,2,0,2, 1,0,0,0,0, 0,1,2,2,1}, new int[] {1,1,1,1},         new int[] {1,0,0,0,0, 1,0,0,0,0, 0,1,0,0,1})
+            test(engine, index++, new int[] {0,1,0,1,1, 0,0,1,1,1, 0,2,2,0,0, 1,1,0,0,1}, new int[] {1,2,3,2,1}, new int[] {0,1,0,1,1, 0,0,1,1,1, 0,0,0,0,0, 1,1,0,0,1}),
+            exceptionTest(engine, index++, new int[] {2,1,2,1,2}, new int[] {1}, new int[] {}),
+            exceptionTest(engine, index++, new int[] {0,1,0,1,0}, new int[] {1}, new int[] {}),
+            test(engine, index++, new int[] {1,2,2,0,2, 1,0,0,0,0, 0,1,2,2,1}, new int[] {1,1,1,1},         new int[] {1,0,0,0,0, 1,0,0,0,0, 0,1,0,0,1})
         }) {
             if (testResult.length() > 0) {
-                System.out.println(testResult);
+                System.out.println(engine + " " + testResult);
                 noFailure = false;
             }
         }
-        if (noFailure) {
-            System.out.println("\nAll test cases pass!");
-        }
+        return noFailure;
     }
 
-    private static String test(int testIndex, int[] inputline, int[] inputnums, int[] output) {
-        debug("Test " + testIndex);
-        return test(testIndex, inputline, inputnums, output, false);
+    private static String test(LineSolverEngine engine, int testIndex, int[] inputline, int[] inputnums, int[] output) {
+        return test(engine, testIndex, inputline, inputnums, output, false);
     }
 
-    private static String exceptionTest(int testIndex, int[] inputline, int[] inputnums, int[] output) {
-        debug("Test " + testIndex);
-        return test(testIndex, inputline, inputnums, output, true);
+    private static String exceptionTest(LineSolverEngine engine, int testIndex, int[] inputline, int[] inputnums, int[] output) {
+        return test(engine, testIndex, inputline, inputnums, output, true);
     }
 
-    private static String test(int testIndex, int[] inputline, int[] inputnums, int[] output, boolean expectFail) {
+    private static String test(LineSolverEngine engine, int testIndex, int[] inputline, int[] inputnums, int[] output, boolean expectFail) {
         int[] result = new int[0];
         try {
-            result = PicrossLineSolver.tryToSolveLine(inputline, inputnums);
+            result = engine.tryToSolveLine(inputline, inputnums);
             int i = 0;
             while (i < result.length) {
                 if (result[i] != output[i]) {
@@ -0,0 +1,50 @@
+package Solver;
+
+import java.util.Arrays;
+
+// Keeps a probe's propagation near the cell it tried, for propagation rules that want a cheap answer more than a
+// complete one. The row and column through the cell are at depth 0, and a line reached through a cell that a line at
+// depth d changed is at depth d + 1. Lines deeper than maxDepth or further than radius rows or columns from the cell are
+// left unsolved, and so is every line once lineBudget of them have been solved.
+class ProbeScope {
+    protected final static int UNLIMITED = Integer.MAX_VALUE;
+    private final PackedGrid grid;
+    private final int row;
+    private final int col;
+    private final int maxDepth;
+    private final int radius;
+    private int linesLeft;
+    private final int[] lineDepth;
+
+    protected ProbeScope(PackedGrid grid, int row, int col, int maxDepth, int radius, int lineBudget) {
+        this.grid = grid;
+        this.row = row;
+        this.col = col;
+        this.maxDepth = maxDepth;
+        this.radius = radius;
+        linesLeft = lineBudget;
+        lineDepth = new int[grid.lineCount()];
+        Arrays.fill(lineDepth, UNLIMITED);
+        lineDepth[grid.rowLine(row)] = 0;
+        lineDepth[grid.colLine(col)] = 0;
+    }
+
+    // whether line may be solved now, which uses up one line of the budget when it may
+    protected boolean take(int line) {
+        if (linesLeft <= 0 || lineDepth[line] > maxDepth) {
+            return false;
+        }
+        int distance = grid.isColumn(line) ? Math.abs(grid.colOf(line, 0) - col) : Math.abs(line - row);
+        if (distance > radius) {
+            return false;
+        }
+        linesLeft--;
+        return true;
+    }
+
+    protected void reached(int line, int fromLine) {
+        if (lineDepth[fromLine] < lineDepth[line] - 1) {
+            lineDepth[line] = lineDepth[fromLine] + 1;
+        }
+    }
+}
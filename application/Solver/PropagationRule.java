@@ -0,0 +1,38 @@
+package Solver;
+
+import java.util.List;
+
+// A way of deducing cells that solving one line at a time misses, which solvableWithGuessAndCheck runs once line solving
+// stalls and before it falls back to probing every cell. The rules are tried in order, cheapest first, and after one
+// deduces anything the lines are solved again and the rules start over from the first. How often each one fires, and
+// what it costs, is in the SolverMetrics of the solve.
+//
+// Rules see the solver's grid, so they can only be written inside this package.
+public interface PropagationRule {
+    String getName();
+
+    // deduces what it can with PicrossSolver.deduce and returns how many cells it deduced, or throws
+    // IllegalStateException when it finds that the clues cannot be satisfied
+    int apply(PicrossSolver solver) throws IllegalStateException;
+
+    // Ranked probing finds everything these do and the same outcomes for fewer probe solvers, so none of them run unless
+    // asked for
+    static List<PropagationRule> defaults() {
+        return List.of();
+    }
+
+    // every rule there is, cheapest first
+    static List<PropagationRule> all() {
+        return List.of(new ClueEdgeRule(), new LinePairRule(), new NeighbourhoodProbeRule());
+    }
+
+    // one of all() by name, ignoring case
+    static PropagationRule named(String name) throws IllegalArgumentException {
+        for (PropagationRule rule : all()) {
+            if (rule.getName().equalsIgnoreCase(name)) {
+                return rule;
+            }
+        }
+        throw new IllegalArgumentException("No propagation rule named " + name);
+    }
+}
@@ -1,265 +1,236 @@
 package Solver;
 
 import java.util.Arrays;
-import java.util.Optional;
-import java.util.function.IntConsumer;
-import java.util.stream.IntStream;
 
-class SegmentOfUncrossedBlocks {
-    private int[] segment;
-    protected final int len;
-    protected final int linePosition;
-    private int[] nums;
-    private int[] positions;
-    private int numsLen;
-    private PicrossSquare[] squares;
-    private boolean hasSomeFilled;
-
-    protected SegmentOfUncrossedBlocks(int[] segment, int linePosition) {
-        this.segment = segment;
-        len = segment.length;
-        this.linePosition = linePosition;
-        squares = new PicrossSquare[len];
-
-        IntStream.range(0, len)
-                 .iterator()
-                 .forEachRemaining((IntConsumer) this::createPicrossSquare);
-    }
-
-    private void createPicrossSquare(int index) {
-        squares[index] = new PicrossSquare();
-        if (segment[index] == PicrossSolver.FILLED_CELL) {
-            squares[index].setAlreadyFilled();
-            hasSomeFilled = true;
-        }
-    }
-
-    protected boolean notPossibleToFit(int[] theNums) {
-        PicrossSolver.debug("Try to fit " + Arrays.toString(theNums) + " in " + Arrays.toString(segment));
-        try {
-            nums = theNums;
-            numsLen = nums.length;
-
-            Optional<Boolean> specialCaseResult = checkNumsSpecialCases();
-            if (specialCaseResult.isPresent()) {
-                return specialCaseResult.get();
+// A run of cells in a line with no crossed cell in it. Segments are numbered from the left and live in the arrays of a
+// LineSolverScratch, where each cell of the line has a could be filled and a could be crossed flag in place of a square.
+abstract class SegmentOfUncrossedBlocks {
+
+    protected static void createSegment(LineSolverScratch scratch, int[] line, int segment, int linePosition, int len) {
+        scratch.segmentStarts[segment] = linePosition;
+        scratch.segmentLengths[segment] = len;
+        scratch.segmentHasSomeFilled[segment] = false;
+        scratch.segmentNumsCount[segment] = 0;
+
+        int index = linePosition;
+        while (index < linePosition + len) {
+            scratch.couldBeFilled[index] = line[index] == PicrossSolver.FILLED_CELL;
+            scratch.couldBeCrossed[index] = false;
+            if (line[index] == PicrossSolver.FILLED_CELL) {
+                scratch.segmentHasSomeFilled[segment] = true;
             }
-
-            setInitialPositions();
-
-            try {
-                setPositionsToMinimumAcceptable(segment, nums, positions);
-                return false;
-            } catch (IllegalArgumentException e) {
-                PicrossSolver.debug("Nums cannot cover everything");
-                return true;
-            }
-        } catch (ArrayIndexOutOfBoundsException e) {
-            PicrossSolver.debug("Went over the end of the line, couldn't fit them: " + e.getMessage());
-            return true;
+            index++;
         }
     }
 
-    // The next two functions are abstracted out in this way partially to ensure positions is not initialized if there is a special case
-    private Optional<Boolean> checkNumsSpecialCases() {
-        if (numsLen == 0 || nums[0] == 0) {
-            PicrossSolver.debug("Are there already filled in spaces? " + hasSomeFilled);
-            return Optional.of(hasSomeFilled);
-        }
+    // checks nums numsFrom up to numsFrom + numsCount against the segment, where a numsCount of 0 means it holds none
+    protected static boolean notPossibleToFit(LineSolverScratch scratch, int[] line, int segment, int[] nums, int numsFrom, int numsCount) {
+        int len = scratch.segmentLengths[segment];
+        int[] positions = scratch.positions;
+        scratch.segmentNumsFrom[segment] = numsFrom;
+        scratch.segmentNumsCount[segment] = numsCount;
 
-        if (nums[0] == len) { 
-            if (numsLen == 1) {
-                PicrossSolver.debug("Fits exactly");
-                positions = new int[] {0};
-                return Optional.of(false);
-            } else {
-                PicrossSolver.debug("Obviously too large");
-                return Optional.of(true);
-            }
+        if (numsCount == 0) {
+            return scratch.segmentHasSomeFilled[segment];
+        }
+        if (nums[numsFrom] == len) {
+            positions[numsFrom] = 0;
+            return numsCount != 1;
         }
 
-        return Optional.empty();
-    }
-
-    private void setInitialPositions() {
-        positions = new int[numsLen];
+        positions[numsFrom] = 0;
         int numIndex = 1;
-        while (numIndex < numsLen) {
-            positions[numIndex] = positions[numIndex - 1] + nums[numIndex - 1] + 1;
+        while (numIndex < numsCount) {
+            positions[numsFrom + numIndex] = positions[numsFrom + numIndex - 1] + nums[numsFrom + numIndex - 1] + 1;
             numIndex++;
         }
+        if (SolverTrace.isEnabled(SolverTrace.Subsystem.LINE_SOLVER)) {
+            SolverTrace.event(SolverTrace.Subsystem.LINE_SOLVER, "tryToFit", "segmentStart", scratch.segmentStarts[segment], "nums", Arrays.copyOfRange(nums, numsFrom, numsFrom + numsCount));
+        }
+
+        return !setPositionsToMinimumAcceptable(line, scratch.segmentStarts[segment], len, nums, numsFrom, numsCount, positions, numsFrom);
     }
 
-    private void setPositionsToMinimumAcceptable(int[] ourSegment, int[] ourNums, int[] ourPositions) throws ArrayIndexOutOfBoundsException, IllegalArgumentException {
+    // moves each num right just far enough to cover every filled cell, and reports whether that worked
+    private static boolean setPositionsToMinimumAcceptable(int[] cells, int cellsFrom, int len, int[] nums, int numsFrom, int numsCount, int[] positions, int positionsFrom) {
         boolean restart = true;
         int index = len - 1;
 
-        PicrossSolver.debug("Moving each over just enough");
         while (restart) {
             restart = false;
             index = len - 1;
 
-            int numIndex = numsLen - 1;
+            int numIndex = numsCount - 1;
             while (!restart && numIndex >= 0) {
-                while (!restart && index >= ourPositions[numIndex] + ourNums[numIndex]) {
-                    if (ourSegment[index] == PicrossSolver.FILLED_CELL) {
-                        PicrossSolver.debug("Jump num at numIndex " + numIndex + " to index " + (index - ourNums[numIndex] + 1) + " of " + Arrays.toString(ourSegment));
-                        ourPositions[numIndex] = index - ourNums[numIndex] + 1;
+                while (!restart && index >= positions[positionsFrom + numIndex] + nums[numsFrom + numIndex]) {
+                    if (cells[cellsFrom + index] == PicrossSolver.FILLED_CELL) {
+                        positions[positionsFrom + numIndex] = index - nums[numsFrom + numIndex] + 1;
                         restart = true;
                     }
                     index--;
                 }
-                preventOverlap(numIndex, ourNums, ourPositions);
-                index = ourPositions[numIndex] - 1;
+                if (!preventOverlap(numIndex, len, nums, numsFrom, numsCount, positions, positionsFrom)) {
+                    return false;
+                }
+                index = positions[positionsFrom + numIndex] - 1;
                 numIndex--;
             }
         }
 
         while (index >= 0) {
-            if (ourSegment[index] == PicrossSolver.FILLED_CELL) {
-                throw new IllegalArgumentException();
+            if (cells[cellsFrom + index] == PicrossSolver.FILLED_CELL) {
+                return false;
             }
             index--;
         }
-
-        PicrossSolver.debug("Found positions " + Arrays.toString(ourPositions));
+        return true;
     }
 
-    private void preventOverlap(int numIndex, int[] ourNums, int[] ourPositions) throws ArrayIndexOutOfBoundsException {
-        while (numIndex < numsLen - 1 && ourPositions[numIndex] + ourNums[numIndex] >= ourPositions[numIndex + 1]) {
-            ourPositions[numIndex + 1] = ourPositions[numIndex] + ourNums[numIndex] + 1;
+    // false when pushing the nums apart runs them over the end of the segment
+    private static boolean preventOverlap(int numIndex, int len, int[] nums, int numsFrom, int numsCount, int[] positions, int positionsFrom) {
+        while (numIndex < numsCount - 1 && positions[positionsFrom + numIndex] + nums[numsFrom + numIndex] >= positions[positionsFrom + numIndex + 1]) {
+            positions[positionsFrom + numIndex + 1] = positions[positionsFrom + numIndex] + nums[numsFrom + numIndex] + 1;
             numIndex++;
         }
-        if (ourPositions[numIndex] + ourNums[numIndex] > len) {
-            throw new ArrayIndexOutOfBoundsException("Went over edge while trying to prevent overlap: index" + numIndex + " of " + Arrays.toString(ourNums) + " at " + Arrays.toString(ourPositions));
-        }
+        return positions[positionsFrom + numIndex] + nums[numsFrom + numIndex] <= len;
     }
 
-    // intended to be called after checking on a possible set of nums, will throw exception otherwise
-    protected void assessPossibilities() {
-        if (nums == null) {
-            throw new RuntimeException("Do not assess possibilitites when no possiblities have been given");
-        }
-
-        if (positions == null) {
-            if (nums[0] == len) {
-                for (PicrossSquare square : squares) {
-                    square.setCouldBeFilled();
-                }
-            } else {
-                for (PicrossSquare square : squares) {
-                    square.setCouldBeCrossed();
-                }
+    // intended to be called right after every segment of the line passed notPossibleToFit for the current distribution
+    protected static void assessPossibilities(LineSolverScratch scratch, int[] line, int segment, int[] nums) throws IllegalStateException {
+        if (scratch.segmentNumsCount[segment] == 0) {
+            int index = scratch.segmentStarts[segment];
+            while (index < scratch.segmentStarts[segment] + scratch.segmentLengths[segment]) {
+                setCouldBeCrossed(scratch, line, index);
+                index++;
             }
         } else {
-            getPossibilitiesFromCurrentPositions();
-            moveAllToMaxAndCollectInfo();
+            getPossibilitiesFromCurrentPositions(scratch, line, segment, nums);
+            moveAllToMaxAndCollectInfo(scratch, line, segment, nums);
+        }
+    }
+
+    private static void setCouldBeCrossed(LineSolverScratch scratch, int[] line, int cell) throws IllegalStateException {
+        if (line[cell] == PicrossSolver.FILLED_CELL) {
+            throw new IllegalStateException("Tried to overwrite square");
         }
+        scratch.couldBeCrossed[cell] = true;
     }
 
-    private void getPossibilitiesFromCurrentPositions() throws RuntimeException {
-        PicrossSolver.debug("Getting initial new possiblities for segment " + Arrays.toString(segment) + " and nums " + Arrays.toString(nums) + " with positions " + Arrays.toString(positions));
+    private static void getPossibilitiesFromCurrentPositions(LineSolverScratch scratch, int[] line, int segment, int[] nums) throws IllegalStateException {
+        int start = scratch.segmentStarts[segment];
+        int numsFrom = scratch.segmentNumsFrom[segment];
+        int numsCount = scratch.segmentNumsCount[segment];
+        int[] positions = scratch.positions;
+
         int index = 0;
         int numIndex = 0;
-        while (index < positions[numsLen - 1] + nums[numsLen - 1]) {
-            while (index < positions[numIndex]) {
-                squares[index].setCouldBeCrossed();
+        while (index < positions[numsFrom + numsCount - 1] + nums[numsFrom + numsCount - 1]) {
+            while (index < positions[numsFrom + numIndex]) {
+                setCouldBeCrossed(scratch, line, start + index);
                 index++;
             }
-            while (index < positions[numIndex] + nums[numIndex]) {
-                squares[index].setCouldBeFilled();
+            while (index < positions[numsFrom + numIndex] + nums[numsFrom + numIndex]) {
+                scratch.couldBeFilled[start + index] = true;
                 index++;
             }
             numIndex++;
         }
-        while (index < len) {
-            squares[index].setCouldBeCrossed();
+        while (index < scratch.segmentLengths[segment]) {
+            setCouldBeCrossed(scratch, line, start + index);
             index++;
         }
     }
 
-    private void moveAllToMaxAndCollectInfo() {
-        int[] maxPositions = findMaximumAcceptablePositions();
-        int newPosition = positions[numsLen - 1];
-        while (newPosition <= maxPositions[numsLen - 1]) {
-            moveToDifferentPosition(numsLen - 1, newPosition, positions.clone(), maxPositions);
+    private static void moveAllToMaxAndCollectInfo(LineSolverScratch scratch, int[] line, int segment, int[] nums) throws IllegalStateException {
+        int numsCount = scratch.segmentNumsCount[segment];
+        findMaximumAcceptablePositions(scratch, line, segment, nums);
+        int newPosition = scratch.positions[scratch.segmentNumsFrom[segment] + numsCount - 1];
+        while (newPosition <= scratch.maxPositions[numsCount - 1]) {
+            moveToDifferentPosition(scratch, line, segment, nums, numsCount - 1, newPosition);
             newPosition++;
         }
     }
 
-    private int[] findMaximumAcceptablePositions() {
-        PicrossSolver.debug("Finding max positions");
-        int[] flippedSegment = flippedCopy(segment, len);
-        int[] flippedNums = flippedCopy(nums, numsLen);
-        int[] flippedPositions = new int[numsLen];
-        
-        int numIndex = 1;
-        while (numIndex < numsLen) {
-            flippedPositions[numIndex] = flippedPositions[numIndex - 1] + flippedNums[numIndex - 1] + 1;
+    // the minimum positions of the segment read from its other end, turned back around
+    private static void findMaximumAcceptablePositions(LineSolverScratch scratch, int[] line, int segment, int[] nums) throws IllegalStateException {
+        int start = scratch.segmentStarts[segment];
+        int len = scratch.segmentLengths[segment];
+        int numsFrom = scratch.segmentNumsFrom[segment];
+        int numsCount = scratch.segmentNumsCount[segment];
+        int[] flippedPositions = scratch.flippedPositions;
+
+        int index = 0;
+        while (index < len) {
+            scratch.flippedCells[index] = line[start + len - index - 1];
+            index++;
+        }
+        int numIndex = 0;
+        while (numIndex < numsCount) {
+            scratch.flippedNums[numIndex] = nums[numsFrom + numsCount - numIndex - 1];
             numIndex++;
         }
 
-        setPositionsToMinimumAcceptable(flippedSegment, flippedNums, flippedPositions);
-
-        int[] maxPositions = new int[numsLen];
-        numIndex = 0;
-        while (numIndex < numsLen) {
-            maxPositions[numIndex] = len - flippedPositions[numsLen - 1 - numIndex] - nums[numIndex];
+        flippedPositions[0] = 0;
+        numIndex = 1;
+        while (numIndex < numsCount) {
+            flippedPositions[numIndex] = flippedPositions[numIndex - 1] + scratch.flippedNums[numIndex - 1] + 1;
             numIndex++;
         }
+        if (!setPositionsToMinimumAcceptable(scratch.flippedCells, 0, len, scratch.flippedNums, 0, numsCount, flippedPositions, 0)) {
+            throw new IllegalStateException("Nums fit the segment from the left but not from the right");
+        }
 
-        PicrossSolver.debug("Found max " + Arrays.toString(maxPositions));
-        return maxPositions;
-    }
-
-    private int[] flippedCopy(int[] myArray, int len) {
-        int[] flipped = new int[len];
-        int index = 0;
-        while (index < len) {
-            flipped[index] = myArray[len - index - 1];
-            index++;
+        numIndex = 0;
+        while (numIndex < numsCount) {
+            scratch.maxPositions[numIndex] = len - flippedPositions[numsCount - 1 - numIndex] - nums[numsFrom + numIndex];
+            numIndex++;
         }
-        return flipped;
     }
 
-    private void moveToDifferentPosition(int numIndex, int position, int[] tryingPositions, int[] maxPositions) {
+    private static void moveToDifferentPosition(LineSolverScratch scratch, int[] line, int segment, int[] nums, int numIndex, int position) throws IllegalStateException {
+        int numsFrom = scratch.segmentNumsFrom[segment];
+        int[] tryingPositions = scratch.tryingPositions;
         tryingPositions[numIndex] = position;
         if (numIndex == 0) {
-            tryPositions(tryingPositions);
+            tryPositions(scratch, line, segment, nums);
             return;
         }
 
-        int newPosition = positions[numIndex - 1];
-        while (newPosition <= Math.min(maxPositions[numIndex - 1], tryingPositions[numIndex] - 1 - nums[numIndex - 1])) {
-            moveToDifferentPosition(numIndex - 1, newPosition, tryingPositions, maxPositions);
+        int newPosition = scratch.positions[numsFrom + numIndex - 1];
+        while (newPosition <= Math.min(scratch.maxPositions[numIndex - 1], tryingPositions[numIndex] - 1 - nums[numsFrom + numIndex - 1])) {
+            moveToDifferentPosition(scratch, line, segment, nums, numIndex - 1, newPosition);
             newPosition++;
         }
     }
 
-    private void tryPositions(int[] tryingPositions) {
-        PicrossSolver.debug("Trying " + Arrays.toString(tryingPositions));
-        int index = positions[0];
+    private static void tryPositions(LineSolverScratch scratch, int[] line, int segment, int[] nums) throws IllegalStateException {
+        int start = scratch.segmentStarts[segment];
+        int numsFrom = scratch.segmentNumsFrom[segment];
+        int numsCount = scratch.segmentNumsCount[segment];
+        int[] tryingPositions = scratch.tryingPositions;
+
+        int index = scratch.positions[numsFrom];
         int numIndex = 0;
-        while (index < tryingPositions[numsLen - 1]) {
+        while (index < tryingPositions[numsCount - 1]) {
             while (index < tryingPositions[numIndex]) {
-                if (segment[index] == PicrossSolver.FILLED_CELL) {
+                if (line[start + index] == PicrossSolver.FILLED_CELL) {
                     return;
                 }
                 index++;
             }
-            index = tryingPositions[numIndex] + nums[numIndex];
+            index = tryingPositions[numIndex] + nums[numsFrom + numIndex];
             numIndex++;
         }
 
-        index = positions[0];
+        index = scratch.positions[numsFrom];
         numIndex = 0;
-        while (index < tryingPositions[numsLen - 1] + nums[numsLen - 1]) {
+        while (index < tryingPositions[numsCount - 1] + nums[numsFrom + numsCount - 1]) {
             while (index < tryingPositions[numIndex]) {
-                squares[index].setCouldBeCrossed();
+                setCouldBeCrossed(scratch, line, start + index);
                 index++;
             }
-            while (index < tryingPositions[numIndex] + nums[numIndex]) {
-                squares[index].setCouldBeFilled();
+            while (index < tryingPositions[numIndex] + nums[numsFrom + numIndex]) {
+                scratch.couldBeFilled[start + index] = true;
                 index++;
             }
             numIndex++;
@@ -267,13 +238,17 @@ class SegmentOfUncrossedBlocks {
     }
 
     // Intended to be called only after all segments in the line have been verified to fit assigned nums according to current distribution
-    protected int[] getNewInfo() throws RuntimeException {
-        int[] newInfo = new int[len];
-        IntStream.range(0, len)
-                 .iterator()
-                 .forEachRemaining((IntConsumer) index -> newInfo[index] = squares[index].concludeDataFromPossibilities());
-        
-        PicrossSolver.debug("Collected info " + Arrays.toString(newInfo));
-        return newInfo;
+    protected static void writeNewInfo(LineSolverScratch scratch, int segment, int[] newLine) {
+        int index = scratch.segmentStarts[segment];
+        while (index < scratch.segmentStarts[segment] + scratch.segmentLengths[segment]) {
+            if (scratch.couldBeFilled[index] && !scratch.couldBeCrossed[index]) {
+                newLine[index] = PicrossSolver.FILLED_CELL;
+            } else if (scratch.couldBeCrossed[index] && !scratch.couldBeFilled[index]) {
+                newLine[index] = PicrossSolver.CROSSED_CELL;
+            } else {
+                newLine[index] = PicrossSolver.EMPTY_CELL;
+            }
+            index++;
+        }
     }
-}
\ No newline at end of file
+}
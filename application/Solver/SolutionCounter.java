@@ -0,0 +1,84 @@
+package Solver;
+
+import java.util.List;
+
+// Tells whether a set of clues has no solution, exactly one, or more than one. Counting stops at the second solution
+// and both solutions found are kept as witnesses. One counter can be reused for many puzzles, and they all share its
+// line solution cache.
+public class SolutionCounter {
+    public final static long DEFAULT_TIME_BUDGET_MILLIS = 10_000;
+    private long timeBudgetMillis = DEFAULT_TIME_BUDGET_MILLIS;
+    private LineSolutionCache lineSolutionCache = new LineSolutionCache();
+
+    public void setTimeBudgetMillis(long timeBudgetMillis) {
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    public void setLineSolutionCache(LineSolutionCache lineSolutionCache) {
+        this.lineSolutionCache = lineSolutionCache;
+    }
+
+    public LineSolutionCache getLineSolutionCache() {
+        return lineSolutionCache;
+    }
+
+    public Result countSolutions(int[][] matrix) {
+        return countSolutions(PicrossClues.rowClues(matrix), PicrossClues.colClues(matrix));
+    }
+
+    public Result countSolutions(int[][] rowHeaders, int[][] colHeaders) {
+        long startTime = System.nanoTime();
+        PicrossSearch search = new PicrossSearch(rowHeaders, colHeaders);
+        search.setLineSolutionCache(lineSolutionCache);
+        PicrossSearch.Outcome outcome = search.search(timeBudgetMillis, 2);
+        return new Result(outcome, search.getSolutions(), search.getNodeCount(), (System.nanoTime() - startTime) / 1_000_000);
+    }
+
+    public static class Result {
+        private final PicrossSearch.Outcome outcome;
+        private final List<int[][]> witnesses;
+        private final long nodeCount;
+        private final long elapsedMillis;
+
+        private Result(PicrossSearch.Outcome outcome, List<int[][]> witnesses, long nodeCount, long elapsedMillis) {
+            this.outcome = outcome;
+            this.witnesses = witnesses;
+            this.nodeCount = nodeCount;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public PicrossSearch.Outcome getOutcome() {
+            return outcome;
+        }
+
+        // 0, 1 or 2, where 2 means at least two. When timed out this only counts the solutions found in time.
+        public int getCount() {
+            return witnesses.size();
+        }
+
+        public boolean isUnique() {
+            return outcome == PicrossSearch.Outcome.UNIQUE;
+        }
+
+        public boolean isTimedOut() {
+            return outcome == PicrossSearch.Outcome.TIMED_OUT;
+        }
+
+        public List<int[][]> getWitnesses() {
+            return witnesses;
+        }
+
+        public long getNodeCount() {
+            return nodeCount;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return outcome + " after " + nodeCount + " nodes in " + elapsedMillis + "ms";
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package Solver;
+
+// A fixed size ring of steps, each packed into a long, for one solver thread to add to and one other thread to take from.
+// When it is full it either drops its oldest step, for keeping just the latest steps, or makes the solver wait until a
+// step is taken, so a solver that runs ahead of the viewer uses no more memory than the ring. Closing it stops the
+// wait and drops every step added afterwards, for when the viewer goes away.
+//
+// A step packs the column into bits 0 to 15, the row into bits 16 to 31, the new state into bits 32 and 33, whether the
+// column clue is in focus into bit 34 and the low 28 bits of the group into bits 35 to 62, so it is never negative.
+public class SolutionStepBuffer implements SolutionStepSink {
+    public static enum WhenFull { DROP_OLDEST, WAIT }
+    public final static long NO_STEP = -1;
+    private final static int MAX_INDEX = 0xFFFF;
+    private final long[] steps;
+    private final WhenFull whenFull;
+    private int head = 0;
+    private int size = 0;
+    private long droppedCount = 0;
+    private int peakSize = 0;
+    private boolean closed = false;
+
+    public SolutionStepBuffer(int capacity, WhenFull whenFull) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive but is " + capacity);
+        }
+        steps = new long[capacity];
+        this.whenFull = whenFull;
+    }
+
+    @Override
+    public synchronized void add(int row, int col, int newState, boolean focusColNums, int group) {
+        if (row > MAX_INDEX || col > MAX_INDEX) {
+            throw new IllegalArgumentException("Cell " + row + ", " + col + " is too far out to pack into a step");
+        }
+        while (size == steps.length && whenFull == WhenFull.WAIT && !closed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (closed) {
+            droppedCount++;
+            return;
+        }
+        if (size == steps.length) {
+            head = (head + 1) % steps.length;
+            size--;
+            droppedCount++;
+        }
+        steps[(head + size) % steps.length] = pack(row, col, newState, focusColNums, group);
+        size++;
+        peakSize = Math.max(peakSize, size);
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return steps.length;
+    }
+
+    // the oldest step without taking it, or NO_STEP when there is none
+    public synchronized long peek() {
+        return size == 0 ? NO_STEP : steps[head];
+    }
+
+    // takes the oldest step, or returns NO_STEP when there is none
+    public synchronized long poll() {
+        if (size == 0) {
+            return NO_STEP;
+        }
+        long step = steps[head];
+        head = (head + 1) % steps.length;
+        size--;
+        notifyAll();
+        return step;
+    }
+
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    // the most steps it has held at once
+    public synchronized int getPeakSize() {
+        return peakSize;
+    }
+
+    public static long pack(int row, int col, int newState, boolean focusColNums, int group) {
+        return (long) col | (long) row << 16 | (long) newState << 32 | (focusColNums ? 1L : 0L) << 34 | (long) (group & 0xFFFFFFF) << 35;
+    }
+
+    public static int rowOf(long step) {
+        return (int) (step >>> 16) & MAX_INDEX;
+    }
+
+    public static int colOf(long step) {
+        return (int) step & MAX_INDEX;
+    }
+
+    public static int newStateOf(long step) {
+        return (int) (step >>> 32) & 3;
+    }
+
+    public static boolean focusesColNums(long step) {
+        return (step >>> 34 & 1) == 1;
+    }
+
+    public static int groupOf(long step) {
+        return (int) (step >>> 35);
+    }
+}
@@ -0,0 +1,11 @@
+package Solver;
+
+// Where a solver sends each cell it deduces, for something such as the viewer to play back. Steps deduced by the same
+// line solve, or the same probe, share a group.
+@FunctionalInterface
+public interface SolutionStepSink {
+    // for solvers that nobody watches
+    public final static SolutionStepSink NONE = (row, col, newState, focusColNums, group) -> {};
+
+    void add(int row, int col, int newState, boolean focusColNums, int group);
+}
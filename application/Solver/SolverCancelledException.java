@@ -0,0 +1,11 @@
+package Solver;
+
+// Thrown out of a solve whose thread was interrupted, such as by SolverTask.cancel or a time limit running out. It is
+// not an IllegalStateException, since solvers take those to mean the clues contradict each other.
+public class SolverCancelledException extends RuntimeException {
+    private final static long serialVersionUID = 1L;
+
+    public SolverCancelledException(String message) {
+        super(message);
+    }
+}
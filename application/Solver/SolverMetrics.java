@@ -0,0 +1,170 @@
+package Solver;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// What one call to solvable or solvableWithGuessAndCheck cost, counting the sub-solvers it made for guess and check.
+// Phase times are wall time on the solving thread: the initial pass is the first propagation of the call, propagation
+// is every one after it, rules is the time spent in propagation rules, and probing is the time spent trying cells both
+// ways. Engine line solves are the line solves the line solution cache could not answer, and distributions are only
+// tried by the DISTRIBUTIONS engine.
+//
+// Anything the line solving or probing pools can count from their own threads is a LongAdder.
+public class SolverMetrics {
+    private long initialPassNanos = 0;
+    private long propagationNanos = 0;
+    private long probingNanos = 0;
+    private long rulesNanos = 0;
+    // by rule name, in the order the rules first ran; only the solving thread runs rules
+    private final LinkedHashMap<String, RuleCounts> ruleCounts = new LinkedHashMap<>();
+    private long lineSolveCount = 0;
+    private final LongAdder engineLineSolveCount = new LongAdder();
+    private final LongAdder distributionsTried = new LongAdder();
+    private final LongAdder probeSolverCount = new LongAdder();
+    private final LongAdder contradictionCount = new LongAdder();
+    private int peakStepQueueDepth = 0;
+
+    protected void addInitialPassNanos(long nanos) {
+        initialPassNanos += nanos;
+    }
+
+    protected void addPropagationNanos(long nanos) {
+        propagationNanos += nanos;
+    }
+
+    protected void addProbingNanos(long nanos) {
+        probingNanos += nanos;
+    }
+
+    protected void countRule(String name, int deducedCount, long nanos) {
+        RuleCounts counts = ruleCounts.computeIfAbsent(name, ruleName -> new RuleCounts());
+        counts.runCount++;
+        if (deducedCount > 0) {
+            counts.fireCount++;
+        }
+        counts.cellCount += deducedCount;
+        counts.nanos += nanos;
+        rulesNanos += nanos;
+    }
+
+    protected void setLineSolveCount(long lineSolveCount) {
+        this.lineSolveCount = lineSolveCount;
+    }
+
+    protected void countEngineLineSolve(long distributions) {
+        engineLineSolveCount.increment();
+        distributionsTried.add(distributions);
+    }
+
+    protected void countProbeSolver() {
+        probeSolverCount.increment();
+    }
+
+    protected void countContradiction() {
+        contradictionCount.increment();
+    }
+
+    protected void setPeakStepQueueDepth(int peakStepQueueDepth) {
+        this.peakStepQueueDepth = peakStepQueueDepth;
+    }
+
+    public double getInitialPassMillis() {
+        return initialPassNanos / 1_000_000.0;
+    }
+
+    public double getPropagationMillis() {
+        return propagationNanos / 1_000_000.0;
+    }
+
+    public double getProbingMillis() {
+        return probingNanos / 1_000_000.0;
+    }
+
+    public double getRulesMillis() {
+        return rulesNanos / 1_000_000.0;
+    }
+
+    public double getTotalMillis() {
+        return (initialPassNanos + propagationNanos + rulesNanos + probingNanos) / 1_000_000.0;
+    }
+
+    public Map<String, RuleCounts> getRuleCounts() {
+        return Collections.unmodifiableMap(ruleCounts);
+    }
+
+    public long getLineSolveCount() {
+        return lineSolveCount;
+    }
+
+    public long getEngineLineSolveCount() {
+        return engineLineSolveCount.sum();
+    }
+
+    public long getDistributionsTried() {
+        return distributionsTried.sum();
+    }
+
+    public long getProbeSolverCount() {
+        return probeSolverCount.sum();
+    }
+
+    // every line that turned out to have no solution, most of them in probes
+    public long getContradictionCount() {
+        return contradictionCount.sum();
+    }
+
+    // 0 unless the steps went to a SolutionStepBuffer
+    public int getPeakStepQueueDepth() {
+        return peakStepQueueDepth;
+    }
+
+    // always with a . for the decimal point, whatever the locale
+    public String toJson() {
+        StringBuilder rules = new StringBuilder("{");
+        for (Map.Entry<String, RuleCounts> entry : ruleCounts.entrySet()) {
+            RuleCounts counts = entry.getValue();
+            rules.append(rules.length() > 1 ? "," : "")
+                 .append(String.format(Locale.ROOT, "\"%s\":{\"runs\":%d,\"fires\":%d,\"cells\":%d,\"millis\":%.3f}",
+                                       entry.getKey(), counts.runCount, counts.fireCount, counts.cellCount, counts.getMillis()));
+        }
+        return String.format(Locale.ROOT, "{\"initialPassMillis\":%.3f,\"propagationMillis\":%.3f,\"rulesMillis\":%.3f,\"probingMillis\":%.3f,"
+                             + "\"totalMillis\":%.3f,\"lineSolves\":%d,\"engineLineSolves\":%d,\"distributionsTried\":%d,\"probeSolvers\":%d,"
+                             + "\"contradictions\":%d,\"peakStepQueueDepth\":%d,\"rules\":%s}",
+                             getInitialPassMillis(), getPropagationMillis(), getRulesMillis(), getProbingMillis(),
+                             getTotalMillis(), getLineSolveCount(), getEngineLineSolveCount(), getDistributionsTried(), getProbeSolverCount(),
+                             getContradictionCount(), getPeakStepQueueDepth(), rules.append('}'));
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+
+    // what one propagation rule did over a solve: how often it ran, how many of those runs deduced anything, how many
+    // cells it deduced and how long it took
+    public static class RuleCounts {
+        private long runCount = 0;
+        private long fireCount = 0;
+        private long cellCount = 0;
+        private long nanos = 0;
+
+        public long getRunCount() {
+            return runCount;
+        }
+
+        public long getFireCount() {
+            return fireCount;
+        }
+
+        public long getCellCount() {
+            return cellCount;
+        }
+
+        public double getMillis() {
+            return nanos / 1_000_000.0;
+        }
+    }
+}
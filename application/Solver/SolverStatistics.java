@@ -0,0 +1,146 @@
+package Solver;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Adds up the metrics of every solve that finishes, for dashboards to read over JMX once register has been called.
+// Solves record themselves whether or not it is registered, since adding up is cheap next to any solve.
+public class SolverStatistics implements SolverStatisticsMXBean {
+    public final static String OBJECT_NAME = "Picross:type=SolverStatistics";
+    private final static SolverStatistics instance = new SolverStatistics();
+    private long solveCount = 0;
+    private double initialPassMillis = 0;
+    private double propagationMillis = 0;
+    private double probingMillis = 0;
+    private double rulesMillis = 0;
+    private long ruleCellCount = 0;
+    private long lineSolveCount = 0;
+    private long engineLineSolveCount = 0;
+    private long distributionsTried = 0;
+    private long probeSolverCount = 0;
+    private long contradictionCount = 0;
+    private int peakStepQueueDepth = 0;
+    private String lastSolve = "{}";
+
+    private SolverStatistics() {}
+
+    public static SolverStatistics getInstance() {
+        return instance;
+    }
+
+    // registers with the platform MBean server, once however often it is called
+    public static void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(instance, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // registered already
+        } catch (JMException e) {
+            System.err.println("Could not register " + OBJECT_NAME + ": " + e);
+        }
+    }
+
+    protected static void record(SolverMetrics metrics) {
+        instance.add(metrics);
+    }
+
+    private synchronized void add(SolverMetrics metrics) {
+        solveCount++;
+        initialPassMillis += metrics.getInitialPassMillis();
+        propagationMillis += metrics.getPropagationMillis();
+        probingMillis += metrics.getProbingMillis();
+        rulesMillis += metrics.getRulesMillis();
+        ruleCellCount += metrics.getRuleCounts().values().stream().mapToLong(SolverMetrics.RuleCounts::getCellCount).sum();
+        lineSolveCount += metrics.getLineSolveCount();
+        engineLineSolveCount += metrics.getEngineLineSolveCount();
+        distributionsTried += metrics.getDistributionsTried();
+        probeSolverCount += metrics.getProbeSolverCount();
+        contradictionCount += metrics.getContradictionCount();
+        peakStepQueueDepth = Math.max(peakStepQueueDepth, metrics.getPeakStepQueueDepth());
+        lastSolve = metrics.toJson();
+    }
+
+    @Override
+    public synchronized long getSolveCount() {
+        return solveCount;
+    }
+
+    @Override
+    public synchronized double getInitialPassMillis() {
+        return initialPassMillis;
+    }
+
+    @Override
+    public synchronized double getPropagationMillis() {
+        return propagationMillis;
+    }
+
+    @Override
+    public synchronized double getProbingMillis() {
+        return probingMillis;
+    }
+
+    @Override
+    public synchronized double getRulesMillis() {
+        return rulesMillis;
+    }
+
+    @Override
+    public synchronized long getRuleCellCount() {
+        return ruleCellCount;
+    }
+
+    @Override
+    public synchronized long getLineSolveCount() {
+        return lineSolveCount;
+    }
+
+    @Override
+    public synchronized long getEngineLineSolveCount() {
+        return engineLineSolveCount;
+    }
+
+    @Override
+    public synchronized long getDistributionsTried() {
+        return distributionsTried;
+    }
+
+    @Override
+    public synchronized long getProbeSolverCount() {
+        return probeSolverCount;
+    }
+
+    @Override
+    public synchronized long getContradictionCount() {
+        return contradictionCount;
+    }
+
+    @Override
+    public synchronized int getPeakStepQueueDepth() {
+        return peakStepQueueDepth;
+    }
+
+    @Override
+    public synchronized String getLastSolve() {
+        return lastSolve;
+    }
+
+    @Override
+    public synchronized void reset() {
+        solveCount = 0;
+        initialPassMillis = 0;
+        propagationMillis = 0;
+        probingMillis = 0;
+        rulesMillis = 0;
+        ruleCellCount = 0;
+        lineSolveCount = 0;
+        engineLineSolveCount = 0;
+        distributionsTried = 0;
+        probeSolverCount = 0;
+        contradictionCount = 0;
+        peakStepQueueDepth = 0;
+        lastSolve = "{}";
+    }
+}
@@ -0,0 +1,35 @@
+package Solver;
+
+// The totals SolverStatistics shows over JMX, for every solve since the program started or since the last reset.
+public interface SolverStatisticsMXBean {
+    long getSolveCount();
+
+    double getInitialPassMillis();
+
+    double getPropagationMillis();
+
+    double getProbingMillis();
+
+    double getRulesMillis();
+
+    // the cells propagation rules deduced
+    long getRuleCellCount();
+
+    long getLineSolveCount();
+
+    long getEngineLineSolveCount();
+
+    long getDistributionsTried();
+
+    long getProbeSolverCount();
+
+    long getContradictionCount();
+
+    // the deepest any one solve's step queue got
+    int getPeakStepQueueDepth();
+
+    // the metrics of the latest solve as JSON
+    String getLastSolve();
+
+    void reset();
+}
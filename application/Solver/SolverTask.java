@@ -0,0 +1,135 @@
+package Solver;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// A solve running on a pool of solver threads, the shared one unless another is given, with a handle to cancel it by.
+// Cancelling interrupts the thread, and solvers check for that after every line they solve, so a cancelled or timed out
+// solve gives its thread back within a line solve instead of running on to the end. The threads are daemons, so they
+// never hold the program open, and any left idle for a minute are let go.
+public class SolverTask<T> {
+    private final static AtomicInteger threadCount = new AtomicInteger();
+    private final static ExecutorService executor = Executors.newCachedThreadPool(runnable -> newDaemonThread(runnable, "picross-solver-" + threadCount.incrementAndGet()));
+    private final static ScheduledThreadPoolExecutor timeLimits = new ScheduledThreadPoolExecutor(1, runnable -> newDaemonThread(runnable, "picross-solver-time-limits"));
+    private final FutureTask<T> future;
+    private volatile Optional<ScheduledFuture<?>> timeLimit = Optional.empty();
+    private volatile boolean timedOut = false;
+
+    static {
+        // so the time limits of solves that finish in time do not pile up in the queue
+        timeLimits.setRemoveOnCancelPolicy(true);
+    }
+
+    private SolverTask(Supplier<T> solve) {
+        future = new FutureTask<>(solve::get) {
+            @Override
+            protected void done() {
+                timeLimit.ifPresent(limit -> limit.cancel(false));
+            }
+        };
+    }
+
+    public static <T> SolverTask<T> submit(Supplier<T> solve) {
+        return submit(solve, Optional.empty());
+    }
+
+    public static <T> SolverTask<T> submit(Supplier<T> solve, Optional<Duration> timeLimit) {
+        return submit(executor, solve, timeLimit);
+    }
+
+    // runs on the given executor instead of the shared pool, such as one with a bounded queue. The time limit starts
+    // straight away, so time spent waiting in the executor's queue counts against it.
+    public static <T> SolverTask<T> submit(Executor executor, Supplier<T> solve, Optional<Duration> timeLimit) throws RejectedExecutionException {
+        SolverTask<T> task = new SolverTask<>(solve);
+        if (timeLimit.isPresent()) {
+            task.timeLimit = Optional.of(timeLimits.schedule(task::timeOut, timeLimit.get().toNanos(), TimeUnit.NANOSECONDS));
+        }
+        try {
+            executor.execute(task.future);
+        } catch (RejectedExecutionException e) {
+            task.timeLimit.ifPresent(limit -> limit.cancel(false));
+            throw e;
+        }
+        return task;
+    }
+
+    private static Thread newDaemonThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private void timeOut() {
+        timedOut = true;
+        if (!future.cancel(true)) {
+            timedOut = false;
+        }
+    }
+
+    // does nothing if the solve already finished
+    public void cancel() {
+        future.cancel(true);
+    }
+
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    // true for solves that timed out as well as ones cancelled by hand
+    public boolean isCancelled() {
+        return future.isCancelled();
+    }
+
+    public boolean isTimedOut() {
+        return timedOut && future.isCancelled();
+    }
+
+    // the result without waiting, which is empty until the solve finishes and stays empty if it was cancelled or failed
+    public Optional<T> getResult() {
+        if (!future.isDone() || future.isCancelled()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.ofNullable(future.get());
+        } catch (InterruptedException | ExecutionException e) {
+            return Optional.empty();
+        }
+    }
+
+    // waits up to the given time for the solve to finish, time out or be cancelled, and returns whether it has
+    public boolean awaitDone(Duration wait) throws InterruptedException {
+        try {
+            future.get(wait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (CancellationException | ExecutionException | TimeoutException e) {
+            // whichever way it ended, or whether it has at all, isDone tells
+        }
+        return future.isDone();
+    }
+
+    // waits for the result, and throws SolverCancelledException if the solve was cancelled or timed out first
+    public T get() throws InterruptedException {
+        try {
+            return future.get();
+        } catch (CancellationException e) {
+            throw new SolverCancelledException(isTimedOut() ? "The solve timed out" : "The solve was cancelled");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw (Error) e.getCause();
+        }
+    }
+}
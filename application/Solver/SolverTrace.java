@@ -0,0 +1,345 @@
+package Solver;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Tracing for the solver that can be switched on per subsystem while the program runs. Every event is written as one
+// JSON object per line, so a trace can be read back with readTrace or replay. Subsystems can also be switched on at
+// start up with -Dpicross.trace=LINE_SOLVER,PROPAGATION (or all) and sent to a file with -Dpicross.trace.file=<path>.
+//
+// A check of isEnabled is a single field read, so hot code guards its events with it and builds nothing while the
+// subsystem is off.
+public class SolverTrace {
+    public static enum Subsystem { LINE_SOLVER, PROPAGATION, PROBING, SEARCH }
+    private static volatile int enabledSubsystems = 0;
+    private static final long startTime = System.nanoTime();
+    private static Writer traceWriter = null;
+    private static boolean ownsTraceWriter = false;
+
+    static {
+        String subsystems = System.getProperty("picross.trace");
+        if (subsystems != null) {
+            for (String name : subsystems.split(",")) {
+                if (name.trim().equalsIgnoreCase("all")) {
+                    enable(Subsystem.values());
+                } else if (!name.isBlank()) {
+                    try {
+                        enable(Subsystem.valueOf(name.trim().toUpperCase()));
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Not tracing " + name.trim() + ", which is not one of " + Arrays.toString(Subsystem.values()));
+                    }
+                }
+            }
+        }
+        String file = System.getProperty("picross.trace.file");
+        if (file != null) {
+            try {
+                traceTo(Paths.get(file));
+                Runtime.getRuntime().addShutdownHook(new Thread(SolverTrace::close));
+            } catch (IOException e) {
+                System.err.println("Could not open trace file " + file + ": " + e);
+            }
+        }
+    }
+
+    private SolverTrace() {}
+
+    public static boolean isEnabled(Subsystem subsystem) {
+        return (enabledSubsystems & (1 << subsystem.ordinal())) != 0;
+    }
+
+    public static synchronized void enable(Subsystem... subsystems) {
+        for (Subsystem subsystem : subsystems) {
+            enabledSubsystems |= 1 << subsystem.ordinal();
+        }
+    }
+
+    public static synchronized void disable(Subsystem... subsystems) {
+        for (Subsystem subsystem : subsystems) {
+            enabledSubsystems &= ~(1 << subsystem.ordinal());
+        }
+    }
+
+    // events go to standard out until a writer or file is given
+    public static synchronized void traceTo(Writer writer) {
+        close();
+        traceWriter = writer;
+        ownsTraceWriter = false;
+    }
+
+    public static synchronized void traceTo(Path file) throws IOException {
+        close();
+        traceWriter = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        ownsTraceWriter = true;
+    }
+
+    // flushes the trace, closes it if it is a file this class opened, and goes back to standard out
+    public static synchronized void close() {
+        if (traceWriter == null) {
+            return;
+        }
+        try {
+            traceWriter.flush();
+            if (ownsTraceWriter) {
+                traceWriter.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Could not finish trace: " + e);
+        }
+        traceWriter = null;
+        ownsTraceWriter = false;
+    }
+
+    // fields are given as names each followed by its value; int[] and long[] values are written as arrays
+    public static void event(Subsystem subsystem, String event, Object... fields) {
+        if (isEnabled(subsystem)) {
+            write(subsystem, event, fields);
+        }
+    }
+
+    private static void write(Subsystem subsystem, String event, Object[] fields) {
+        StringBuilder json = new StringBuilder(96);
+        json.append("{\"time\":").append(System.nanoTime() - startTime);
+        json.append(",\"thread\":");
+        appendString(json, Thread.currentThread().getName());
+        json.append(",\"subsystem\":\"").append(subsystem.name()).append('"');
+        json.append(",\"event\":");
+        appendString(json, event);
+        int index = 0;
+        while (index + 1 < fields.length) {
+            json.append(',');
+            appendString(json, String.valueOf(fields[index]));
+            json.append(':');
+            appendValue(json, fields[index + 1]);
+            index += 2;
+        }
+        json.append("}\n");
+
+        synchronized (SolverTrace.class) {
+            try {
+                if (traceWriter == null) {
+                    traceWriter = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+                    ownsTraceWriter = false;
+                }
+                traceWriter.write(json.toString());
+                if (!ownsTraceWriter) {
+                    traceWriter.flush();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write trace", e);
+            }
+        }
+    }
+
+    private static void appendValue(StringBuilder json, Object value) {
+        if (value == null) {
+            json.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            json.append(value);
+        } else if (value instanceof int[]) {
+            json.append(Arrays.toString((int[]) value).replace(" ", ""));
+        } else if (value instanceof long[]) {
+            json.append(Arrays.toString((long[]) value).replace(" ", ""));
+        } else {
+            appendString(json, value.toString());
+        }
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (char character : value.toCharArray()) {
+            switch (character) {
+                case '"' ->  json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (character < 0x20) {
+                        json.append(String.format("\\u%04x", (int) character));
+                    } else {
+                        json.append(character);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    public static List<TraceEvent> readTrace(Path file) throws IOException {
+        ArrayList<TraceEvent> events = new ArrayList<>();
+        replay(file, events::add);
+        return events;
+    }
+
+    // hands every event of a trace file to the consumer in the order they were written
+    public static void replay(Path file, Consumer<TraceEvent> consumer) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    consumer.accept(TraceEvent.parse(line, lineNumber));
+                }
+                lineNumber++;
+            }
+        }
+    }
+
+    public static class TraceEvent {
+        private final long time;
+        private final String thread;
+        private final Subsystem subsystem;
+        private final String event;
+        // the JSON text of each field other than the four above, except that strings are unquoted
+        private final Map<String, String> fields;
+
+        private TraceEvent(Map<String, String> values) {
+            time = Long.parseLong(values.remove("time"));
+            thread = values.remove("thread");
+            subsystem = Subsystem.valueOf(values.remove("subsystem"));
+            event = values.remove("event");
+            fields = Collections.unmodifiableMap(values);
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public String getThread() {
+            return thread;
+        }
+
+        public Subsystem getSubsystem() {
+            return subsystem;
+        }
+
+        public String getEvent() {
+            return event;
+        }
+
+        public Map<String, String> getFields() {
+            return fields;
+        }
+
+        public String getField(String name) {
+            return fields.get(name);
+        }
+
+        public long getLong(String name) {
+            return Long.parseLong(fields.get(name));
+        }
+
+        public int[] getIntArray(String name) {
+            String array = fields.get(name);
+            if (array == null || array.equals("[]")) {
+                return array == null ? null : new int[0];
+            }
+            return Arrays.stream(array.substring(1, array.length() - 1).split(","))
+                         .mapToInt(Integer::parseInt)
+                         .toArray();
+        }
+
+        @Override
+        public String toString() {
+            return time + " " + thread + " " + subsystem + " " + event + " " + fields;
+        }
+
+        // reads back the flat objects written above, whose values are numbers, booleans, null, strings or number arrays
+        private static TraceEvent parse(String line, int lineNumber) throws IOException {
+            LinkedHashMap<String, String> values = new LinkedHashMap<>();
+            int[] position = {skipSpaces(line, 0)};
+            expect(line, position, '{', lineNumber);
+            while (line.charAt(skipSpaces(line, position[0])) != '}') {
+                position[0] = skipSpaces(line, position[0]);
+                String name = readString(line, position, lineNumber);
+                position[0] = skipSpaces(line, position[0]);
+                expect(line, position, ':', lineNumber);
+                position[0] = skipSpaces(line, position[0]);
+                values.put(name, readValue(line, position, lineNumber));
+                position[0] = skipSpaces(line, position[0]);
+                if (line.charAt(position[0]) == ',') {
+                    position[0]++;
+                }
+            }
+            if (!values.containsKey("time") || !values.containsKey("subsystem") || !values.containsKey("event")) {
+                throw new IOException("Trace line " + lineNumber + " is not a trace event");
+            }
+            values.putIfAbsent("thread", "");
+            return new TraceEvent(values);
+        }
+
+        private static int skipSpaces(String line, int position) {
+            while (position < line.length() && Character.isWhitespace(line.charAt(position))) {
+                position++;
+            }
+            return position;
+        }
+
+        private static void expect(String line, int[] position, char expected, int lineNumber) throws IOException {
+            if (position[0] >= line.length() || line.charAt(position[0]) != expected) {
+                throw new IOException("Expected '" + expected + "' at column " + (position[0] + 1) + " of trace line " + lineNumber);
+            }
+            position[0]++;
+        }
+
+        private static String readValue(String line, int[] position, int lineNumber) throws IOException {
+            if (line.charAt(position[0]) == '"') {
+                return readString(line, position, lineNumber);
+            }
+            int start = position[0];
+            char end = line.charAt(start) == '[' ? ']' : 0;
+            while (position[0] < line.length()) {
+                char character = line.charAt(position[0]);
+                if (end == 0 && (character == ',' || character == '}')) {
+                    break;
+                }
+                position[0]++;
+                if (character == end) {
+                    break;
+                }
+            }
+            return line.substring(start, position[0]).trim();
+        }
+
+        private static String readString(String line, int[] position, int lineNumber) throws IOException {
+            expect(line, position, '"', lineNumber);
+            StringBuilder value = new StringBuilder();
+            while (position[0] < line.length() && line.charAt(position[0]) != '"') {
+                char character = line.charAt(position[0]++);
+                if (character == '\\' && position[0] < line.length()) {
+                    char escaped = line.charAt(position[0]++);
+                    switch (escaped) {
+                        case 'n' -> value.append('\n');
+                        case 'r' -> value.append('\r');
+                        case 't' -> value.append('\t');
+                        case 'u' -> {
+                            value.append((char) Integer.parseInt(line.substring(position[0], position[0] + 4), 16));
+                            position[0] += 4;
+                        }
+                        default -> value.append(escaped);
+                    }
+                } else {
+                    value.append(character);
+                }
+            }
+            expect(line, position, '"', lineNumber);
+            return value.toString();
+        }
+    }
+}
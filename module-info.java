@@ -5,6 +5,12 @@ module Nonogrammatica {
 	requires javafx.base;
 	requires java.desktop;
 	requires javafx.swing;
+	requires java.management;
+	requires jdk.management;
+	requires jdk.httpserver;
+	
+	// for the solver statistics MXBean
+	exports Solver to java.management;
 	
 	opens application to javafx.graphics, javafx.fxml;
 }